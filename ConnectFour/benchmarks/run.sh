@@ -0,0 +1,52 @@
+#!/bin/sh
+# Build the game and its benchmarks, run the benchmarks, and keep the results in results/, one CSV file per run named
+# after the commit it was run on. Each run is compared with the previous one, and the benchmarks that got more than
+# THRESHOLD percent slower are flagged.
+#
+# Usage: benchmarks/run.sh [JMH options], e.g. benchmarks/run.sh GameBoard -f 1 -wi 2 -i 3
+set -e
+
+THRESHOLD=${THRESHOLD:-10}
+
+cd "$(dirname "$0")/.."
+mvn -q -B package -DskipTests
+
+commit=$(git rev-parse --short HEAD)
+if [ -n "$(git status --porcelain -- src)" ]; then
+	commit="$commit-dirty"
+fi
+
+mkdir -p benchmarks/results
+previous=$(ls benchmarks/results/*.csv 2>/dev/null | tail -n 1)
+result="benchmarks/results/$(date +%Y%m%d-%H%M%S)-$commit.csv"
+
+java -jar benchmarks/target/benchmarks.jar -rf csv -rff "$result" "$@"
+
+if [ -z "$previous" ]; then
+	echo "Results: $result (first run, nothing to compare with)"
+	exit 0
+fi
+
+echo "Results: $result, compared with $previous:"
+# Columns: benchmark, mode, threads, samples, score, error, unit, then the parameters. Scores are times: lower is better.
+awk -F, -v threshold="$THRESHOLD" '
+	function key() {
+		k = $1
+		for (i = 8; i <= NF; i++)
+			if ($i != "")
+				k = k "," $i
+		return k
+	}
+	FNR == 1 { next }
+	{ gsub(/"/, "") }
+	NR == FNR { old[key()] = $5; next }
+	{
+		k = key()
+		if (!(k in old)) {
+			printf "  %-60s %12.3f %s (new)\n", k, $5, $7
+			next
+		}
+		change = old[k] == 0 ? 0 : ($5 - old[k]) * 100 / old[k]
+		printf "  %-60s %12.3f %s %+7.1f%%%s\n", k, $5, $7, change, (change > threshold ? "  REGRESSION" : "")
+	}
+' "$previous" "$result"
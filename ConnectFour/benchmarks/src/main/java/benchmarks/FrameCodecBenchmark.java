@@ -0,0 +1,63 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import backend.Frame;
+import backend.FrameCodec;
+
+/**
+ * Wire format: a move (check value, then column) encoded into and decoded from a buffer, as every transport does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameCodecBenchmark {
+	private Frame check;
+	private Frame move;
+	private ByteBuffer buffer;
+	private ByteBuffer encoded;
+	private int seq;
+
+	@Setup
+	public void setUp() {
+		this.check = Frame.ofCheck(0x0123456789ABCDEFL);
+		this.move = Frame.ofInt(3);
+		this.buffer = ByteBuffer.allocate(256);
+		this.encoded = ByteBuffer.allocate(256);
+		FrameCodec.encode(this.check, 0, this.encoded);
+		FrameCodec.encode(this.move, 1, this.encoded);
+		this.encoded.flip();
+	}
+
+	@Benchmark
+	public ByteBuffer encodeMove() {
+		this.buffer.clear();
+		FrameCodec.encode(this.check, this.seq++, this.buffer);
+		FrameCodec.encode(this.move, this.seq++, this.buffer);
+		return this.buffer;
+	}
+
+	@Benchmark
+	public void decodeMove(Blackhole blackhole) throws IOException {
+		this.encoded.rewind();
+		blackhole.consume(FrameCodec.decode(this.encoded));
+		blackhole.consume(FrameCodec.decode(this.encoded));
+	}
+}
@@ -0,0 +1,116 @@
+package benchmarks;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import backend.GameBoard;
+import frontend.MessageHandler;
+
+/**
+ * Game engine: win detection (GameLogic.computeWinner() is GameBoard's), the check value sent with every move, and
+ * whole games played move by move. Each call works on the next of a fixed set of random mid-game positions, so the
+ * branches are not all predicted.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBoardBenchmark {
+	private static final int POSITIONS = 1024; // Power of two
+	private static final long SEED = 42;
+
+	private GameBoard[] boards;
+	private int[] lastColumns;
+	private int[] lastRows;
+	private int[][] games; // Moves of whole random games, up to the end
+	private int next;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(SEED);
+		this.boards = new GameBoard[POSITIONS];
+		this.lastColumns = new int[POSITIONS];
+		this.lastRows = new int[POSITIONS];
+		this.games = new int[POSITIONS][];
+
+		for (int i = 0; i < POSITIONS; i++) {
+			// Mid-game position: the last move may or may not have won.
+			GameBoard board = new GameBoard();
+			int moves = 10 + random.nextInt(20);
+			for (int move = 0; move < moves && board.getWinner() == GameBoard.NOBODY; move++) {
+				int column = randomColumn(board, random);
+				this.lastColumns[i] = column;
+				this.lastRows[i] = board.play(column, board.getTypeToMove());
+			}
+			this.boards[i] = board;
+
+			GameBoard game = new GameBoard();
+			int[] columns = new int[42];
+			int count = 0;
+			while (game.getWinner() == GameBoard.NOBODY) {
+				columns[count] = randomColumn(game, random);
+				game.play(columns[count++], game.getTypeToMove());
+			}
+			this.games[i] = Arrays.copyOf(columns, count);
+		}
+	}
+
+	private static int randomColumn(GameBoard board, Random random) {
+		int column;
+		do {
+			column = random.nextInt(7);
+		} while (!board.canPlay(column));
+		return column;
+	}
+
+	private int nextIndex() {
+		return this.next = (this.next + 1) & (POSITIONS - 1);
+	}
+
+	@Benchmark
+	public int computeWinner() {
+		return this.boards[nextIndex()].computeWinner();
+	}
+
+	@Benchmark
+	public int computeWinnerLastMove() {
+		int i = nextIndex();
+		return this.boards[i].computeWinner(this.lastColumns[i], this.lastRows[i]);
+	}
+
+	/**
+	 * The check value as it goes on the wire in the legacy one-byte messages (GameLogic.getCheckNumberHash()).
+	 */
+	@Benchmark
+	public int checkNumberHash() {
+		return MessageHandler.hashCheckNumber(this.boards[nextIndex()].getCheckNumber());
+	}
+
+	/**
+	 * A whole game: every move played and checked for a win, and the check value taken before each one.
+	 */
+	@Benchmark
+	public void playGame(Blackhole blackhole) {
+		GameBoard board = new GameBoard();
+		for (int column : this.games[nextIndex()]) {
+			blackhole.consume(board.getCheckNumber());
+			board.play(column, board.getTypeToMove());
+		}
+		blackhole.consume(board.getWinner());
+	}
+}
@@ -0,0 +1,61 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import backend.Player;
+
+/**
+ * Player records as the matchmaking handles them: parsed from the pool file, written back to it, and compared to
+ * decide between a direct connection and the server.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerBenchmark {
+	private String line;
+	private Player player;
+	private Player sameSubnet;
+	private Player otherSubnet;
+
+	@Setup
+	public void setUp() {
+		this.line = "192.168.17.42/24,0,player_192.168.17.42_4711";
+		this.player = new Player(this.line);
+		this.sameSubnet = new Player("192.168.17.99/24,1,player_192.168.17.99_815");
+		this.otherSubnet = new Player("10.3.0.7/16,1,player_10.3.0.7_1234");
+	}
+
+	@Benchmark
+	public Player parse() {
+		return new Player(this.line);
+	}
+
+	@Benchmark
+	public String format() {
+		return this.player.toString();
+	}
+
+	@Benchmark
+	public boolean inSameSubnet() {
+		return this.player.inSameSubnet(this.sameSubnet);
+	}
+
+	@Benchmark
+	public boolean inOtherSubnet() {
+		return this.player.inSameSubnet(this.otherSubnet);
+	}
+}
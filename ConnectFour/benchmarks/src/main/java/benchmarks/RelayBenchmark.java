@@ -0,0 +1,89 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import backend.Frame;
+import backend.FrameChannel;
+import backend.GameServer;
+import backend.RelayServer;
+
+/**
+ * Relay transport: the same round trip as TransportBenchmark, but both players connect to a RelayServer on
+ * loopback, which forwards the move to the peer and its echo back.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RelayBenchmark {
+	private RelayServer relay;
+	private FrameChannel client;
+	private FrameChannel peer;
+	private final BlockingQueue<Frame> echoes = new ArrayBlockingQueue<Frame>(16);
+
+	@Setup
+	public void setUp() throws IOException, InterruptedException {
+		this.relay = new RelayServer(InetAddress.getLoopbackAddress(), 0);
+		this.relay.start();
+
+		this.client = FrameChannel.connect("127.0.0.1", this.relay.getPort(), new FrameChannel.Handler() {
+			@Override
+			public void received(Frame frame) {
+				if (frame.isInt())
+					RelayBenchmark.this.echoes.add(frame);
+			}
+
+			@Override
+			public void closed(IOException cause) {
+			}
+		});
+		this.client.send(GameServer.joinFrame(0, "benchmark"));
+
+		this.peer = FrameChannel.connect("127.0.0.1", this.relay.getPort(), new FrameChannel.Handler() {
+			@Override
+			public void received(Frame frame) {
+				if (frame.isInt())
+					RelayBenchmark.this.peer.send(Frame.ofCheck(0x0123456789ABCDEFL), Frame.ofInt(frame.getInt()));
+			}
+
+			@Override
+			public void closed(IOException cause) {
+			}
+		});
+		this.peer.send(GameServer.joinFrame(1, "benchmark"));
+
+		// Wait for both to be paired: the first move is held by the relay until then anyway.
+		roundTrip();
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.client.close();
+		this.peer.close();
+		this.relay.stop();
+	}
+
+	@Benchmark
+	public Frame roundTrip() throws InterruptedException {
+		this.client.send(Frame.ofCheck(0x0123456789ABCDEFL), Frame.ofInt(3));
+		return this.echoes.take();
+	}
+}
@@ -0,0 +1,143 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import backend.HttpFileStorage;
+import backend.LocalFileServer;
+import backend.ServerTextFileIO;
+
+/**
+ * Fallback server files: a player leaving a large pool file and joining it, against a LocalFileServer over loopback.
+ * Each operation is timed on its own: the line is put back (or taken out) before each call, outside of the timing,
+ * so the file keeps its size.
+ *
+ * Also a poll of the pool file (a conditional read, answered 304 Not Modified), over connections kept alive as
+ * HttpFileStorage does, or over a new connection per request: the difference is the cost of a TCP handshake per
+ * poll, which loopback makes as small as it gets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Dsun.net.httpserver.nodelay=true", "-Dhttp.maxConnections=16"})
+public class ServerFileBenchmark {
+	private static final String FILE_NAME = "pool.txt";
+
+	@Param({"1000", "100000"})
+	private int lines;
+
+	private Path root;
+	private LocalFileServer server;
+	private String[] line;
+	private boolean inFile; // Whether the line is in the file
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		this.root = Files.createTempDirectory("connectfour-bench");
+		StringBuilder data = new StringBuilder();
+		for (int i = 0; i < this.lines; i++)
+			data.append("10.0.").append(i >> 8 & 0xFF).append('.').append(i & 0xFF).append("/16,").append(i & 1).append(",player_").append(i).append('\n');
+		Files.write(this.root.resolve(FILE_NAME), data.toString().getBytes(StandardCharsets.UTF_8));
+		this.line = new String[] {"10.0.0.0/16,0,player_0"};
+		this.inFile = true;
+
+		this.server = new LocalFileServer(this.root, 0);
+		this.server.start();
+		ServerTextFileIO.setStorage(new HttpFileStorage(this.server.getBaseUrl()));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		this.server.stop();
+		Files.deleteIfExists(this.root.resolve(FILE_NAME));
+		Files.deleteIfExists(this.root);
+	}
+
+	/**
+	 * Put the line in the file or take it out, if it is not already where it should be.
+	 * @param inFile Whether the line should be in the file.
+	 */
+	private void place(boolean inFile) {
+		if (this.inFile == inFile)
+			return;
+		if (inFile)
+			ServerTextFileIO.getInstance().addLine(FILE_NAME, this.line[0]);
+		else
+			ServerTextFileIO.getInstance().removeLines(FILE_NAME, this.line);
+		this.inFile = inFile;
+	}
+
+	/**
+	 * Puts the line back before each removeLines() call.
+	 */
+	@State(Scope.Thread)
+	public static class LineIn {
+		@Setup(Level.Invocation)
+		public void setUp(ServerFileBenchmark benchmark) {
+			benchmark.place(true);
+		}
+	}
+
+	/**
+	 * Takes the line out before each addLine() call.
+	 */
+	@State(Scope.Thread)
+	public static class LineOut {
+		@Setup(Level.Invocation)
+		public void setUp(ServerFileBenchmark benchmark) {
+			benchmark.place(false);
+		}
+	}
+
+	/**
+	 * Whether requests reuse connections through the JDK's keep-alive cache, or open a new one each time.
+	 */
+	@State(Scope.Benchmark)
+	public static class Connections {
+		@Param({"true", "false"})
+		private boolean keepAlive;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			// The JDK reads it once, at the first connection: the fork has made none yet.
+			System.setProperty("http.keepAlive", Boolean.toString(this.keepAlive));
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SampleTime) // Percentiles: the tail is where a new connection shows
+	public String read(Connections connections) {
+		return ServerTextFileIO.getInstance().read(FILE_NAME);
+	}
+
+	@Benchmark
+	public void removeLines(LineIn state) {
+		ServerTextFileIO.getInstance().removeLines(FILE_NAME, this.line);
+		this.inFile = false;
+	}
+
+	@Benchmark
+	public void addLine(LineOut state) {
+		ServerTextFileIO.getInstance().addLine(FILE_NAME, this.line[0]);
+		this.inFile = true;
+	}
+}
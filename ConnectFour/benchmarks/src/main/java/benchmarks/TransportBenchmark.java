@@ -0,0 +1,86 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import backend.Frame;
+import backend.FrameChannel;
+
+/**
+ * Socket transport: a move (check value and column) sent over loopback to a peer that echoes it back, i.e. the
+ * round trip between two players on the same host.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransportBenchmark {
+	private ServerSocketChannel serverChannel;
+	private FrameChannel client;
+	private FrameChannel peer;
+	private final BlockingQueue<Frame> echoes = new ArrayBlockingQueue<Frame>(16);
+
+	@Setup
+	public void setUp() throws IOException {
+		this.serverChannel = ServerSocketChannel.open();
+		this.serverChannel.bind(new InetSocketAddress("127.0.0.1", 0));
+		int port = ((InetSocketAddress) this.serverChannel.getLocalAddress()).getPort();
+
+		this.client = FrameChannel.connect("127.0.0.1", port, new FrameChannel.Handler() {
+			@Override
+			public void received(Frame frame) {
+				if (frame.isInt())
+					TransportBenchmark.this.echoes.add(frame);
+			}
+
+			@Override
+			public void closed(IOException cause) {
+			}
+		});
+
+		SocketChannel accepted = this.serverChannel.accept();
+		this.peer = FrameChannel.accept(accepted, new FrameChannel.Handler() {
+			@Override
+			public void received(Frame frame) {
+				if (frame.isInt())
+					TransportBenchmark.this.peer.send(Frame.ofCheck(0x0123456789ABCDEFL), Frame.ofInt(frame.getInt()));
+			}
+
+			@Override
+			public void closed(IOException cause) {
+			}
+		});
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		this.client.close();
+		this.peer.close();
+		this.serverChannel.close();
+	}
+
+	@Benchmark
+	public Frame roundTrip() throws InterruptedException {
+		this.client.send(Frame.ofCheck(0x0123456789ABCDEFL), Frame.ofInt(3));
+		return this.echoes.take();
+	}
+}
@@ -0,0 +1,11 @@
+<?php
+  $input=file_get_contents('php://input');
+  $parts=explode(":",$input,2);
+
+  $filename="/home/2015/fglozm/public_html/" . $parts[0];
+  $line=trim($parts[1]);
+
+  if(strpos($filename, '.txt') && strlen($line) > 0) {
+    file_put_contents($filename, $line . "\n", FILE_APPEND | LOCK_EX);
+  }
+?>
@@ -0,0 +1,25 @@
+<?php
+  $input=file_get_contents('php://input');
+  $parts=explode(":",$input,2);
+
+  $filename="/home/2015/fglozm/public_html/" . $parts[0];
+  $linesToRemove=explode("\n",$parts[1]);
+
+  if(strpos($filename, '.txt') && file_exists($filename)) {
+    $handle=fopen($filename,"r+");
+    if(flock($handle, LOCK_EX)) {
+      $kept="";
+      foreach(explode("\n", stream_get_contents($handle)) as $line) {
+        if(strlen($line) > 0 && !in_array($line, $linesToRemove, true)) {
+          $kept.=$line . "\n";
+        }
+      }
+      ftruncate($handle, 0);
+      rewind($handle);
+      fwrite($handle, $kept);
+      fflush($handle);
+      flock($handle, LOCK_UN);
+    }
+    fclose($handle);
+  }
+?>
@@ -0,0 +1,36 @@
+<?php
+  $name=$_GET['file'];
+  $filename="/home/2015/fglozm/public_html/" . $name;
+  $timeout=min(intval($_GET['timeout']), 20000) / 1000.0;
+  $known=isset($_SERVER['HTTP_IF_NONE_MATCH']) ? $_SERVER['HTTP_IF_NONE_MATCH'] : '';
+
+  if(!strpos($filename, '.txt') || strpos($name, '/') !== false) {
+    http_response_code(404);
+    exit;
+  }
+
+  // Hold the request until the file no longer matches the client's copy, checking locally every 50 ms. The tag is
+  // the MD5 of the contents, so that clients can make it up from the copy they read, whatever the web server's ETags.
+  $deadline=microtime(true) + $timeout;
+  do {
+    clearstatcache();
+    if(!file_exists($filename)) {
+      http_response_code(404);
+      exit;
+    }
+
+    $contents=file_get_contents($filename);
+    $etag='"' . md5($contents) . '"';
+    if($etag !== $known) {
+      header('ETag: ' . $etag);
+      header('Content-Type: text/plain');
+      echo $contents;
+      exit;
+    }
+
+    usleep(50000);
+  } while(microtime(true) < $deadline);
+
+  header('ETag: ' . $etag);
+  http_response_code(304);
+?>
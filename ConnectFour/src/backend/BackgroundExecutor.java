@@ -0,0 +1,215 @@
+package backend;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Singleton scheduler running all the background work of the back-end (message listeners and transmitters,
+ * player pool tasks) instead of each of them starting its own thread.
+ *
+ * On a Java runtime with virtual threads (21+), every task gets a virtual thread, so that a host running many
+ * headless clients does not end up with thousands of platform threads. Otherwise, tasks run on a cached pool of
+ * daemon platform threads, which are reused from one task to the next and dropped once idle.
+ *
+ * Either way the number of tasks running at once is bounded, counting a task until its thread is done with it: a
+ * cancelled task blocked in a read that ignores interrupts still counts until the read returns. Past the bound,
+ * submit() fails with a RejectedExecutionException rather than piling up threads, for callers that can report the
+ * failure; queue() (and execute()) hold the task back until another one finishes instead. Tasks are cancelled
+ * through the Future returned, which interrupts them (or drops them if they have not started yet).
+ */
+public class BackgroundExecutor implements Executor {
+	protected static final String VIRTUAL_THREADS_PROPERTY = "connectfour.executor.virtual"; // Set to false to stick to platform threads
+	public static final String MAX_TASKS_PROPERTY = "connectfour.executor.maxtasks";
+	protected static final int MAX_PLATFORM_TASKS = 256;
+	protected static final int MAX_VIRTUAL_TASKS = 16384;
+	protected static final long IDLE_THREAD_TIMEOUT_S = 60;
+
+	private static volatile BackgroundExecutor instance;
+
+	private final ExecutorService executor;
+	private final boolean virtual;
+	private final int maxTasks;
+	private final Semaphore permits;
+	private final ConcurrentLinkedQueue<FutureTask<Void>> backlog; // Queued tasks waiting for a permit
+
+	/**
+	 * Private constructor to enforce singleton pattern.
+	 */
+	private BackgroundExecutor() {
+		ExecutorService virtualExecutor = null;
+		if (Boolean.parseBoolean(System.getProperty(VIRTUAL_THREADS_PROPERTY, "true")))
+			virtualExecutor = newVirtualThreadExecutor();
+
+		this.virtual = virtualExecutor != null;
+		if (this.virtual) {
+			this.executor = virtualExecutor;
+		} else {
+			AtomicInteger threadCount = new AtomicInteger();
+			// The semaphore is what bounds the number of tasks: the pool itself only reuses idle threads.
+			this.executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, IDLE_THREAD_TIMEOUT_S, TimeUnit.SECONDS,
+					new SynchronousQueue<Runnable>(), runnable -> {
+						Thread thread = new Thread(runnable, "BackgroundExecutor-" + threadCount.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					});
+		}
+
+		this.maxTasks = Integer.getInteger(MAX_TASKS_PROPERTY, this.virtual ? MAX_VIRTUAL_TASKS : MAX_PLATFORM_TASKS);
+		this.permits = new Semaphore(this.maxTasks);
+		this.backlog = new ConcurrentLinkedQueue<FutureTask<Void>>();
+	}
+
+	/**
+	 * Following the singleton pattern (lazy evaluation).
+	 * @return Instance of BackgroundExecutor.
+	 */
+	public static BackgroundExecutor getInstance() {
+		if (instance == null) {
+			synchronized (BackgroundExecutor.class) {
+				if (instance == null) {
+					instance = new BackgroundExecutor();
+				}
+			}
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Look up the virtual thread executor reflectively, since it does not exist before Java 21.
+	 * @return Executor starting a virtual thread per task, or null if the runtime has none.
+	 */
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Run a task in the background.
+	 * @param task Task to run.
+	 * @return Future of the task; cancelling it interrupts the task.
+	 * @throws RejectedExecutionException If the maximum number of tasks are running already.
+	 */
+	public Future<?> submit(Runnable task) {
+		if (!this.permits.tryAcquire())
+			throw new RejectedExecutionException("Too many background tasks: " + this.maxTasks + " are already running.");
+
+		FutureTask<Void> future = newTask(task);
+		start(future);
+		return future;
+	}
+
+	/**
+	 * Run a task in the background, as soon as the number of tasks running allows: for tasks that have nobody to
+	 * report a rejection to. Tasks held back start in the order they were queued.
+	 * @param task Task to run.
+	 * @return Future of the task; cancelling it interrupts the task, or drops it if it has not started yet.
+	 */
+	public Future<?> queue(Runnable task) {
+		FutureTask<Void> future = newTask(task);
+		this.backlog.offer(future);
+		// A task may have finished between the queuing and now, finding nothing to hand its permit to.
+		if (this.permits.tryAcquire())
+			handOver();
+		return future;
+	}
+
+	/**
+	 * Wrap a task into a Future.
+	 * @param task Task to run.
+	 * @return Future of the task.
+	 */
+	private FutureTask<Void> newTask(Runnable task) {
+		return new FutureTask<Void>(task, null) {
+			@Override
+			protected void setException(Throwable t) {
+				// Report the failure like a thread of its own would have, unless the task failed from being cancelled.
+				if (!isCancelled()) {
+					Thread thread = Thread.currentThread();
+					thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+				}
+				super.setException(t);
+			}
+		};
+	}
+
+	/**
+	 * Start a task on a thread of its own, with a permit acquired for it. The permit is handed over once the thread
+	 * is done with the task, whether it ran to the end, failed or was cancelled (even before it started).
+	 * @param future Task to run.
+	 */
+	private void start(FutureTask<Void> future) {
+		try {
+			this.executor.execute(() -> {
+				try {
+					future.run();
+				} finally {
+					handOver();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			this.permits.release();
+			future.cancel(false);
+			throw e;
+		}
+	}
+
+	/**
+	 * Hand a permit over to the next task held back, if any is still wanted, or give it back.
+	 */
+	private void handOver() {
+		while (true) {
+			FutureTask<Void> next;
+			while ((next = this.backlog.poll()) != null) {
+				if (!next.isDone()) {
+					start(next);
+					return;
+				}
+			}
+
+			this.permits.release();
+			// Check again for a task queued while the permit was not available.
+			if (this.backlog.isEmpty() || !this.permits.tryAcquire())
+				return;
+		}
+	}
+
+	/**
+	 * Same as queue(), without the Future.
+	 * @param task Task to run.
+	 */
+	@Override
+	public void execute(Runnable task) {
+		queue(task);
+	}
+
+	/**
+	 * Getter function for whether tasks run on virtual threads.
+	 * @return True with virtual threads, false with platform threads.
+	 */
+	public boolean isVirtual() {
+		return this.virtual;
+	}
+
+	/**
+	 * Getter function for the number of tasks currently running (or about to), including cancelled tasks whose
+	 * thread is not done with them yet.
+	 * @return Number of tasks.
+	 */
+	public int getActiveCount() {
+		return this.maxTasks - this.permits.availablePermits();
+	}
+}
@@ -0,0 +1,67 @@
+package backend;
+
+/**
+ * Storage backend behind ServerTextFileIO. An implementation decides where the shared text files actually live
+ * (e.g. the SOCS server or a local stand-in), so that the player pool and the server fallback do not care.
+ */
+public interface FileStorage {
+
+	/**
+	 * Read the contents of a file.
+	 * @param fileName Name of the file to read.
+	 * @return The contents of the file as a string (empty if the file is empty).
+	 */
+	public String read(String fileName);
+
+	/**
+	 * Long poll: block until the file differs from the contents the caller last saw, then return its contents.
+	 * Returns the unchanged contents if nothing happens before the timeout.
+	 * @param fileName Name of the file to watch.
+	 * @param known Contents the caller last saw, or null to return the contents right away.
+	 * @param timeoutMs Maximum time to block in milliseconds.
+	 * @return The contents of the file as a string.
+	 */
+	public String awaitChange(String fileName, String known, long timeoutMs);
+
+	/**
+	 * Abort the awaitChange() calls in progress on a file: they throw right away instead of waiting out their
+	 * timeout. Calls made afterwards are not affected.
+	 * @param fileName Name of the watched file.
+	 */
+	public void cancelAwait(String fileName);
+
+	/**
+	 * Overwrite the contents of a file, creating it if it does not exist.
+	 * @param fileName Name of the file to write.
+	 * @param data String to write to the file.
+	 */
+	public void write(String fileName, String data);
+
+	/**
+	 * Atomically append a line to the end of a file, creating the file if it does not exist. Concurrent appends
+	 * must all make it into the file.
+	 * @param fileName Name of the file to append to.
+	 * @param line Line to append (without its line break).
+	 */
+	public void append(String fileName, String line);
+
+	/**
+	 * Atomically remove all instances of each of the given lines from a file. Does nothing if the file does not exist.
+	 * @param fileName Name of the file from which the lines are to be removed.
+	 * @param lines Lines to be matched.
+	 */
+	public void removeLines(String fileName, String[] lines);
+
+	/**
+	 * Delete a file.
+	 * @param fileName Name of the file to delete.
+	 */
+	public void delete(String fileName);
+
+	/**
+	 * Verify whether a file exists.
+	 * @param fileName Name of the file to be verified.
+	 * @return True if the file exists, false otherwise.
+	 */
+	public boolean exists(String fileName);
+}
@@ -0,0 +1,150 @@
+package backend;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One message of the wire protocol: a protocol version, a message type, a sequence number and a payload whose
+ * meaning depends on the type. Frames are immutable; see FrameCodec for their binary form.
+ *
+ * Outgoing frames are created without a sequence number: the transmitter numbers them as it writes them out.
+ */
+public class Frame {
+	protected static final int VERSION = 1;
+
+	protected static final int TYPE_INT = 1; // A signal or a column number (4-byte integer)
+	protected static final int TYPE_TEXT = 2; // A whole string (UTF-8)
+	protected static final int TYPE_CHECK = 3; // A check value of the board (8-byte integer)
+
+	private final int version;
+	private final int type;
+	private final int seq;
+	private final byte[] payload;
+
+	/**
+	 * Constructor: sets up fields.
+	 * @param version Protocol version.
+	 * @param type Message type.
+	 * @param seq Sequence number.
+	 * @param payload Payload; not copied.
+	 */
+	protected Frame(int version, int type, int seq, byte[] payload) {
+		this.version = version;
+		this.type = type;
+		this.seq = seq;
+		this.payload = payload;
+	}
+
+	/**
+	 * Frame carrying an integer message (a signal or a column number).
+	 * @param message Message.
+	 * @return Frame.
+	 */
+	public static Frame ofInt(int message) {
+		return new Frame(VERSION, TYPE_INT, 0, ByteBuffer.allocate(4).putInt(message).array());
+	}
+
+	/**
+	 * Frames carrying integer messages, one each.
+	 * @param messages Messages, in order.
+	 * @return Frames, in the same order.
+	 */
+	public static Frame[] ofInts(int[] messages) {
+		Frame[] frames = new Frame[messages.length];
+		for (int i = 0; i < messages.length; i++)
+			frames[i] = ofInt(messages[i]);
+		return frames;
+	}
+
+	/**
+	 * Frame carrying a whole string.
+	 * @param text String.
+	 * @return Frame.
+	 */
+	public static Frame ofText(String text) {
+		return new Frame(VERSION, TYPE_TEXT, 0, text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Frame carrying a check value of the board.
+	 * @param check Check value.
+	 * @return Frame.
+	 */
+	public static Frame ofCheck(long check) {
+		return new Frame(VERSION, TYPE_CHECK, 0, ByteBuffer.allocate(8).putLong(check).array());
+	}
+
+	/**
+	 * Getter function for the protocol version the frame was written with.
+	 * @return Version.
+	 */
+	public int getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * Getter function for the message type.
+	 * @return Type.
+	 */
+	public int getType() {
+		return this.type;
+	}
+
+	/**
+	 * Getter function for the sequence number.
+	 * @return Sequence number (0 for an outgoing frame).
+	 */
+	public int getSeq() {
+		return this.seq;
+	}
+
+	/**
+	 * Getter function for the payload.
+	 * @return Payload, not to be modified.
+	 */
+	protected byte[] getPayload() {
+		return this.payload;
+	}
+
+	/**
+	 * @return Whether the frame carries an integer message.
+	 */
+	public boolean isInt() {
+		return this.type == TYPE_INT;
+	}
+
+	/**
+	 * @return Whether the frame carries a string.
+	 */
+	public boolean isText() {
+		return this.type == TYPE_TEXT;
+	}
+
+	/**
+	 * @return Whether the frame carries a check value.
+	 */
+	public boolean isCheck() {
+		return this.type == TYPE_CHECK;
+	}
+
+	/**
+	 * @return The integer message of an integer frame.
+	 */
+	public int getInt() {
+		return ByteBuffer.wrap(this.payload).getInt();
+	}
+
+	/**
+	 * @return The string of a text frame.
+	 */
+	public String getText() {
+		return new String(this.payload, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return The check value of a check frame.
+	 */
+	public long getCheck() {
+		return ByteBuffer.wrap(this.payload).getLong();
+	}
+}
@@ -0,0 +1,269 @@
+package backend;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Two-way frame connection served by the NioReactor: frames are read and written over the same socket, which is
+ * what the game server and its clients talk over (the peer-to-peer handlers use a socket per direction instead).
+ * Same wire format as every other transport (see FrameCodec).
+ *
+ * Everything happens on the reactor; send() and close() may be called from anywhere.
+ */
+public class FrameChannel implements NioReactor.EventHandler {
+	protected static final int BUFFER_SIZE = 1024; // Both buffers grow if need be
+
+	private final NioReactor reactor;
+	private final SocketChannel channel;
+	private final Handler handler;
+	// Everything below is only touched by the reactor.
+	private SelectionKey key;
+	private ByteBuffer in; // Bytes of incomplete frames, in write mode
+	private ByteBuffer out; // Frames not written yet, in write mode
+	private int seq; // Sequence number of the last frame written
+	private boolean connected;
+	private boolean closing;
+	private boolean closed;
+
+	/**
+	 * Receiver of the events of a connection. Only called from the reactor.
+	 */
+	public interface Handler {
+		/**
+		 * A whole frame arrived.
+		 * @param frame Frame.
+		 */
+		public void received(Frame frame);
+
+		/**
+		 * The connection is closed; nothing is received past this point.
+		 * @param cause What broke the connection, or null if it was closed normally (by either end).
+		 */
+		public void closed(IOException cause);
+	}
+
+	/**
+	 * Constructor: sets up fields.
+	 * @param channel Channel, in non-blocking mode.
+	 * @param handler Receiver of the events of the connection.
+	 */
+	private FrameChannel(SocketChannel channel, Handler handler) {
+		this.reactor = NioReactor.getInstance();
+		this.channel = channel;
+		this.handler = handler;
+		this.in = ByteBuffer.allocate(BUFFER_SIZE);
+		this.out = ByteBuffer.allocate(BUFFER_SIZE);
+	}
+
+	/**
+	 * Start connecting to a host. Frames sent in the meantime are written once connected.
+	 * @param hostName Hostname to connect to.
+	 * @param port Port number to connect to.
+	 * @param handler Receiver of the events of the connection.
+	 * @return The connection.
+	 */
+	public static FrameChannel connect(String hostName, int port, Handler handler) throws IOException {
+		SocketChannel channel = SocketChannel.open();
+		try {
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			boolean connected = channel.connect(new InetSocketAddress(hostName, port));
+
+			FrameChannel frameChannel = new FrameChannel(channel, handler);
+			frameChannel.reactor.run(frameChannel, () -> frameChannel.register(connected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, connected));
+			return frameChannel;
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Serve a connection that was just accepted.
+	 * @param channel Accepted channel.
+	 * @param handler Receiver of the events of the connection.
+	 * @return The connection.
+	 */
+	public static FrameChannel accept(SocketChannel channel, Handler handler) throws IOException {
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+
+		FrameChannel frameChannel = new FrameChannel(channel, handler);
+		frameChannel.reactor.run(frameChannel, () -> frameChannel.register(SelectionKey.OP_READ, true));
+		return frameChannel;
+	}
+
+	/**
+	 * Register the channel with the reactor. Must be called from the reactor.
+	 * @param ops Events of interest.
+	 * @param connected Whether the channel is connected already.
+	 */
+	private void register(int ops, boolean connected) {
+		if (this.closed)
+			return;
+
+		try {
+			this.key = this.reactor.register(this.channel, ops, this);
+		} catch (IOException e) {
+			fail(e);
+			return;
+		}
+		if (connected)
+			connected();
+	}
+
+	/**
+	 * Send several frames at once: they are written together, in a single write if the socket can take it.
+	 * @param frames Frames to be transmitted, in order.
+	 */
+	public void send(Frame... frames) {
+		this.reactor.run(this, () -> {
+			if (this.closing)
+				return;
+
+			int length = 0;
+			for (Frame frame : frames)
+				length += FrameCodec.encodedLength(frame);
+
+			if (this.out.remaining() < length) {
+				ByteBuffer bigger = ByteBuffer.allocate(Math.max(this.out.capacity() * 2, this.out.position() + length));
+				this.out.flip();
+				bigger.put(this.out);
+				this.out = bigger;
+			}
+			for (Frame frame : frames)
+				FrameCodec.encode(frame, ++this.seq, this.out);
+
+			if (this.connected)
+				flush();
+		});
+	}
+
+	@Override
+	public void ready(SelectionKey key) {
+		try {
+			if (key.isConnectable()) {
+				this.channel.finishConnect();
+				connected();
+				return;
+			}
+			if (key.isReadable())
+				read();
+			if (key.isValid() && key.isWritable())
+				flush();
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	@Override
+	public void failed(RuntimeException cause) {
+		// Typically the handler throwing on a frame: the connection is as good as broken.
+		fail(new IOException(cause));
+	}
+
+	/**
+	 * The connection is established: start reading, and write whatever was sent in the meantime.
+	 */
+	private void connected() {
+		this.connected = true;
+		this.key.interestOps(SelectionKey.OP_READ);
+		flush();
+	}
+
+	/**
+	 * Pass every whole frame received on to the handler, in order. Partial frames stay in the buffer until the rest
+	 * arrives.
+	 */
+	private void read() throws IOException {
+		if (!this.in.hasRemaining()) {
+			if (this.in.capacity() >= FrameCodec.LENGTH_FIELD_SIZE + FrameCodec.MAX_FRAME_LENGTH)
+				throw new IOException("Frame too long.");
+			ByteBuffer bigger = ByteBuffer.allocate(this.in.capacity() * 2);
+			this.in.flip();
+			bigger.put(this.in);
+			this.in = bigger;
+		}
+
+		// -1 indicates the other end has closed the connection.
+		if (this.channel.read(this.in) == -1) {
+			closeNow(null);
+			return;
+		}
+
+		this.in.flip();
+		try {
+			Frame frame;
+			while (!this.closed && (frame = FrameCodec.decode(this.in)) != null)
+				this.handler.received(frame);
+		} finally {
+			this.in.compact();
+		}
+	}
+
+	/**
+	 * Write as much of the pending frames as the socket takes, and ask to be told when it takes more. Once the
+	 * connection is closing and everything is written, close the socket.
+	 */
+	private void flush() {
+		if (this.closed)
+			return;
+
+		try {
+			this.out.flip();
+			this.channel.write(this.out);
+			this.out.compact();
+		} catch (IOException e) {
+			fail(e);
+			return;
+		}
+
+		boolean pending = this.out.position() > 0;
+		this.key.interestOps(pending ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+
+		if (!pending && this.closing)
+			closeNow(null);
+	}
+
+	/**
+	 * Finish writing the pending frames, then close the connection. Returns right away: the reactor does the rest.
+	 */
+	public void close() {
+		this.reactor.run(this, () -> {
+			this.closing = true;
+			if (this.connected && this.out.position() == 0)
+				closeNow(null);
+			// Otherwise the last flush (or the failure to connect) closes it.
+		});
+	}
+
+	/**
+	 * If something goes horribly wrong, drop the pending frames and close the connection.
+	 * @param cause What went wrong.
+	 */
+	private void fail(IOException cause) {
+		this.out.clear();
+		closeNow(this.closing ? null : cause);
+	}
+
+	/**
+	 * Close the socket and tell the handler, once. Must be called from the reactor.
+	 * @param cause What broke the connection, or null if it was closed normally.
+	 */
+	private void closeNow(IOException cause) {
+		if (this.closed)
+			return;
+		this.closing = true;
+		this.closed = true;
+
+		try {
+			this.channel.close();
+		} catch (IOException e) {
+			// oh well...
+		}
+		this.handler.closed(cause);
+	}
+}
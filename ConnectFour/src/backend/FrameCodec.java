@@ -0,0 +1,155 @@
+package backend;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Binary form of the frames, shared by every transport. Each frame is length-prefixed, so a reader always knows
+ * where the next one starts, even if it does not understand the frame itself:
+ *
+ * length   4 bytes  number of bytes after this field (6 + payload length)
+ * version  1 byte   protocol version (Frame.VERSION)
+ * type     1 byte   message type
+ * seq      4 bytes  sequence number, counting up from 1 per transmitter
+ * payload  (length - 6) bytes
+ *
+ * All integers are big-endian. The server fallback files carry the same bytes, Base64-encoded, one line per post.
+ */
+public class FrameCodec {
+	protected static final int LENGTH_FIELD_SIZE = 4;
+	protected static final int HEADER_SIZE = 6; // version + type + seq
+	protected static final int MAX_FRAME_LENGTH = 65536; // Anything longer is garbage, not a frame
+
+	/**
+	 * Number of bytes a frame takes on the wire.
+	 * @param frame Frame.
+	 * @return Encoded length, length field included.
+	 */
+	public static int encodedLength(Frame frame) {
+		return LENGTH_FIELD_SIZE + HEADER_SIZE + frame.getPayload().length;
+	}
+
+	/**
+	 * Write a frame to a buffer.
+	 * @param frame Frame to write.
+	 * @param seq Sequence number to write it with.
+	 * @param out Buffer, with at least encodedLength(frame) bytes remaining.
+	 */
+	public static void encode(Frame frame, int seq, ByteBuffer out) {
+		byte[] payload = frame.getPayload();
+		out.putInt(HEADER_SIZE + payload.length);
+		out.put((byte) frame.getVersion());
+		out.put((byte) frame.getType());
+		out.putInt(seq);
+		out.put(payload);
+	}
+
+	/**
+	 * Encode consecutive frames into a single array, to be written in one go.
+	 * @param frames Frames to write, in order.
+	 * @param firstSeq Sequence number of the first frame; the next ones follow.
+	 * @return Encoded frames.
+	 */
+	public static byte[] encode(List<Frame> frames, int firstSeq) {
+		int length = 0;
+		for (Frame frame : frames)
+			length += encodedLength(frame);
+
+		ByteBuffer out = ByteBuffer.allocate(length);
+		int seq = firstSeq;
+		for (Frame frame : frames)
+			encode(frame, seq++, out);
+		return out.array();
+	}
+
+	/**
+	 * Read a frame from a buffer, if it holds a whole one.
+	 * @param in Buffer, in read mode.
+	 * @return The frame, or null if the buffer does not hold a whole frame yet (in which case it is left untouched).
+	 */
+	public static Frame decode(ByteBuffer in) throws IOException {
+		if (in.remaining() < LENGTH_FIELD_SIZE)
+			return null;
+
+		int length = in.getInt(in.position());
+		checkLength(length);
+		if (in.remaining() < LENGTH_FIELD_SIZE + length)
+			return null;
+
+		in.getInt();
+		int version = in.get() & 0xFF;
+		int type = in.get() & 0xFF;
+		int seq = in.getInt();
+		byte[] payload = new byte[length - HEADER_SIZE];
+		in.get(payload);
+		return new Frame(version, type, seq, payload);
+	}
+
+	/**
+	 * Read a frame from a stream, blocking until it is all there.
+	 * @param in Stream.
+	 * @return The frame, or null if the stream ended cleanly before it.
+	 */
+	public static Frame read(DataInputStream in) throws IOException {
+		int length;
+		try {
+			length = in.readInt();
+		} catch (EOFException e) {
+			return null;
+		}
+		checkLength(length);
+
+		int version = in.readUnsignedByte();
+		int type = in.readUnsignedByte();
+		int seq = in.readInt();
+		byte[] payload = new byte[length - HEADER_SIZE];
+		in.readFully(payload);
+		return new Frame(version, type, seq, payload);
+	}
+
+	/**
+	 * Encode consecutive frames as a line of text, for the server fallback files.
+	 * @param frames Frames to write, in order.
+	 * @param firstSeq Sequence number of the first frame; the next ones follow.
+	 * @return Base64 line (without line break).
+	 */
+	public static String toLine(List<Frame> frames, int firstSeq) {
+		return Base64.getEncoder().encodeToString(encode(frames, firstSeq));
+	}
+
+	/**
+	 * Decode a line of the server fallback files.
+	 * @param line Base64 line.
+	 * @return Frames it holds, in order.
+	 */
+	public static List<Frame> fromLine(String line) throws IOException {
+		ByteBuffer in;
+		try {
+			in = ByteBuffer.wrap(Base64.getDecoder().decode(line.trim()));
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Malformed frame line: " + line, e);
+		}
+
+		List<Frame> frames = new ArrayList<Frame>();
+		Frame frame;
+		while ((frame = decode(in)) != null)
+			frames.add(frame);
+		if (in.hasRemaining())
+			throw new IOException("Truncated frame line: " + line);
+		return frames;
+	}
+
+	/**
+	 * Make sure a length field is sensible before trusting it.
+	 * @param length Length read.
+	 */
+	private static void checkLength(int length) throws IOException {
+		if (length < HEADER_SIZE || length > MAX_FRAME_LENGTH)
+			throw new IOException("Invalid frame length: " + length);
+	}
+}
@@ -0,0 +1,46 @@
+package backend;
+
+import frontend.MiddleWare;
+
+/**
+ * Receiving end of a frame stream: drops the frames it has already seen, and hands the others to the front-end
+ * according to their type. Frames of a type it does not know are skipped, so that newer peers can add message
+ * types without breaking older ones; frames of another protocol version cannot be trusted and fail the transfer.
+ */
+public class FrameReceiver {
+	private int lastSeq;
+
+	/**
+	 * Constructor: nothing received yet.
+	 */
+	public FrameReceiver() {
+		this.lastSeq = 0;
+	}
+
+	/**
+	 * Deliver a frame to the front-end, unless it is a duplicate.
+	 * @param frame Frame received.
+	 * @param mw Means of communicating the information with the front-end.
+	 * @return False if the frame comes from an incompatible peer, true otherwise.
+	 */
+	public boolean receive(Frame frame, MiddleWare mw) {
+		if (frame.getVersion() != Frame.VERSION) {
+			mw.transferFail();
+			return false;
+		}
+
+		// Sequence numbers only go up: anything not above the last one was delivered already.
+		if (frame.getSeq() <= this.lastSeq)
+			return true;
+		this.lastSeq = frame.getSeq();
+
+		if (frame.isInt())
+			mw.transferData(frame.getInt());
+		else if (frame.isText())
+			mw.transferText(frame.getText());
+		else if (frame.isCheck())
+			mw.transferCheck(frame.getCheck());
+
+		return true;
+	}
+}
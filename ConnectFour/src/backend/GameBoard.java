@@ -0,0 +1,286 @@
+package backend;
+
+import java.util.Arrays;
+
+/**
+ * State of a Connect Four grid, without any view attached: where the tokens are, and who won. Used by the game
+ * view and by the game server alike.
+ *
+ * The grid is 7 columns by 6 rows; row 0 is the top row, so tokens fall towards row 5.
+ *
+ * It is held as a pair of bitboards, one per color: bit column * 7 + height is set if the color has a token at
+ * that height of the column (height 0 being the bottom row). The 7th bit of each column stays empty, so that lines
+ * shifted across columns never wrap around. Column heights and four-in-a-rows are then a handful of bit operations,
+ * and a whole grid takes 16 bytes.
+ *
+ * The board also keeps the Zobrist hash of the grid up to date (one XOR per token, see Zobrist): it is the check
+ * value players exchange with their moves, and the key of the grid in search tables.
+ */
+public class GameBoard {
+	protected static final int COLUMNS = 7;
+	protected static final int ROWS = 6;
+
+	public static final int NOBODY = 0;
+	public static final int DRAW = 3;
+
+	protected static final int HEIGHT = ROWS + 1; // Bits per column, the empty one on top included
+	private static final long COLUMN_MASK = (1L << ROWS) - 1; // Cells of column 0
+
+	// Shifts from a cell to its neighbour along each line: vertical, horizontal and both diagonals.
+	private static final int[] DIRECTIONS = {1, HEIGHT, HEIGHT - 1, HEIGHT + 1};
+	// Four-in-a-rows going through each cell (13 at most), indexed by bit.
+	private static final long[][] LINES = lines();
+
+	private long tokens1, tokens2; // Cells taken by color 1 and color 2
+	private long hash; // Zobrist hash of the grid
+	private int moves; // Number of tokens in the grid
+	private int winner; // 0 = nobody, 3 = draw
+
+	/**
+	 * Constructor: empty grid.
+	 */
+	public GameBoard() {
+		this.tokens1 = 0;
+		this.tokens2 = 0;
+		this.hash = 0;
+		this.moves = 0;
+		this.winner = NOBODY;
+	}
+
+	/**
+	 * Row where a token dropped in a column comes to rest.
+	 * @param column Column number (range: 0-6 incl.)
+	 * @return Row number (range: 0-5 incl.)
+	 */
+	public int getDropRow(int column) {
+		if (column < 0 || column >= COLUMNS)
+			throw new RuntimeException("Invalid column.");
+
+		int height = getHeight(column);
+		if (height == ROWS)
+			throw new RuntimeException("Token being placed in full column.");
+
+		return ROWS - 1 - height;
+	}
+
+	/**
+	 * Whether a token can still be dropped in a column.
+	 * @param column Column number.
+	 * @return True if the column exists and is not full, false otherwise.
+	 */
+	public boolean canPlay(int column) {
+		return column >= 0 && column < COLUMNS && getHeight(column) < ROWS;
+	}
+
+	/**
+	 * Number of tokens in a column.
+	 * @param column Column number (range: 0-6 incl.)
+	 * @return Height of the column (range: 0-6 incl.)
+	 */
+	public int getHeight(int column) {
+		return Long.bitCount((this.tokens1 | this.tokens2) & (COLUMN_MASK << (column * HEIGHT)));
+	}
+
+	/**
+	 * Drop a token in a column and update the winner.
+	 * @param column Column number (range: 0-6 incl.)
+	 * @param type Color of the token as integer (1 or 2).
+	 * @return Row where the token came to rest.
+	 */
+	public int play(int column, int type) {
+		int row = getDropRow(column);
+		insert(column, row, type);
+		computeWinner(column, row);
+		return row;
+	}
+
+	/**
+	 * Place a token permanently in the grid. The winner is only updated by computeWinner().
+	 * @param column Column where the token will reside.
+	 * @param row Row where the token will reside: the one it comes to rest at (see getDropRow()).
+	 * @param type Token color.
+	 */
+	public void insert(int column, int row, int type) {
+		if (type != 1 && type != 2)
+			throw new RuntimeException("Invalid token type.");
+
+		if (row != getDropRow(column))
+			throw new RuntimeException("Token placed away from the top of its column.");
+
+		int bit = column * HEIGHT + ROWS - 1 - row;
+		if (type == 1)
+			this.tokens1 |= 1L << bit;
+		else
+			this.tokens2 |= 1L << bit;
+		this.hash ^= Zobrist.key(type, bit);
+		this.moves++;
+	}
+
+	/**
+	 * Update the winner (0 is nobody and 3 is a draw), looking at the whole grid.
+	 * @return Winner.
+	 */
+	public int computeWinner() {
+		if (hasFour(this.tokens1))
+			this.winner = 1;
+		else if (hasFour(this.tokens2))
+			this.winner = 2;
+		else if (isFull())
+			this.winner = DRAW;
+		else
+			this.winner = NOBODY;
+		return this.winner;
+	}
+
+	/**
+	 * Update the winner after a token is placed, looking only at the four lines through it: no other line can
+	 * have changed. Same result as computeWinner() as long as it is called after every insert().
+	 * @param column Column of the token just placed.
+	 * @param row Row of the token just placed.
+	 * @return Winner.
+	 */
+	public int computeWinner(int column, int row) {
+		if (this.winner != NOBODY && this.winner != DRAW)
+			return this.winner;
+
+		int type = getToken(column, row);
+		long tokens = type == 1 ? this.tokens1 : this.tokens2;
+
+		for (long line : LINES[column * HEIGHT + ROWS - 1 - row]) {
+			if ((tokens & line) == line) {
+				this.winner = type;
+				return this.winner;
+			}
+		}
+
+		this.winner = isFull() ? DRAW : NOBODY;
+		return this.winner;
+	}
+
+	/**
+	 * Whether the grid is completely populated with tokens. If there are no winners and that is a case, there is a draw.
+	 * @return True if the grid if full, false otherwise.
+	 */
+	public boolean isFull() {
+		return this.moves == COLUMNS * ROWS;
+	}
+
+	/**
+	 * Getter function for the number of tokens in the grid.
+	 * @return Number of moves played.
+	 */
+	public int getMoveCount() {
+		return this.moves;
+	}
+
+	/**
+	 * Whether a color's cells line up four in a row, in any direction.
+	 * @param tokens Cells of the color.
+	 * @return True if there is a connect 4, false otherwise.
+	 */
+	protected static boolean hasFour(long tokens) {
+		for (int direction : DIRECTIONS) {
+			long pairs = tokens & (tokens >>> direction); // Cells followed by another one
+			if ((pairs & (pairs >>> (2 * direction))) != 0) // Pairs followed by another pair
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Generates a number unique to the current state of the board, for all practical purposes: its 64-bit Zobrist
+	 * hash. Both players compute it before each move to make sure their grids agree.
+	 * @return Board value.
+	 */
+	public long getCheckNumber() {
+		return this.hash;
+	}
+
+	/**
+	 * Getter function for the cells of a color, as a bitboard (see class comment).
+	 * @param type Color (1 or 2).
+	 * @return Cells taken by the color.
+	 */
+	public long getTokens(int type) {
+		return type == 1 ? this.tokens1 : this.tokens2;
+	}
+
+	/**
+	 * Getter function for the color whose turn it is: color 1 always moves first.
+	 * @return Color to move (1 or 2).
+	 */
+	public int getTypeToMove() {
+		return this.moves % 2 == 0 ? 1 : 2;
+	}
+
+	/**
+	 * Getter function for the winner's color, as of the last update.
+	 * @return Winner's color; special cases: 0 if nobody, 3 if draw.
+	 */
+	public int getWinner() {
+		return this.winner;
+	}
+
+	/**
+	 * Color of the token in a cell.
+	 * @param column Column number (range: 0-6 incl.)
+	 * @param row Row number (range: 0-5 incl.)
+	 * @return Token color (1 or 2), or 0 if the cell is empty.
+	 */
+	public int getToken(int column, int row) {
+		long cell = 1L << (column * HEIGHT + ROWS - 1 - row);
+		if ((this.tokens1 & cell) != 0)
+			return 1;
+		if ((this.tokens2 & cell) != 0)
+			return 2;
+		return 0;
+	}
+
+	/**
+	 * Copy of the grid represented as a 2D array.
+	 * @return 2D array representation of the grid, indexed [column][row].
+	 */
+	public int[][] getPositions() {
+		int[][] positions = new int[COLUMNS][ROWS];
+		for (int column = 0; column < COLUMNS; column++) {
+			for (int row = 0; row < ROWS; row++)
+				positions[column][row] = getToken(column, row);
+		}
+		return positions;
+	}
+
+	/**
+	 * Helper function to list the four-in-a-rows going through each cell.
+	 * @return Masks of the lines, indexed by the bit of the cell.
+	 */
+	private static long[][] lines() {
+		int[][] steps = {{0, 1}, {1, 0}, {1, 1}, {1, -1}}; // Column and height steps along each direction
+		long[][] lines = new long[COLUMNS * HEIGHT][];
+
+		for (int column = 0; column < COLUMNS; column++) {
+			for (int height = 0; height < ROWS; height++) {
+				long[] found = new long[16];
+				int count = 0;
+				for (int[] step : steps) {
+					// The cell can be first, second, third or fourth on the line.
+					for (int offset = 0; offset < 4; offset++) {
+						int startColumn = column - offset * step[0];
+						int startHeight = height - offset * step[1];
+						int endColumn = startColumn + 3 * step[0];
+						int endHeight = startHeight + 3 * step[1];
+						if (startColumn < 0 || endColumn >= COLUMNS || Math.min(startHeight, endHeight) < 0
+								|| Math.max(startHeight, endHeight) >= ROWS)
+							continue;
+
+						long line = 0;
+						for (int i = 0; i < 4; i++)
+							line |= 1L << ((startColumn + i * step[0]) * HEIGHT + startHeight + i * step[1]);
+						found[count++] = line;
+					}
+				}
+				lines[column * HEIGHT + height] = Arrays.copyOf(found, count);
+			}
+		}
+		return lines;
+	}
+}
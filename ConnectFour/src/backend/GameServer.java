@@ -0,0 +1,245 @@
+package backend;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless game server: instead of connecting to each other, both players of a game connect to the server, which
+ * hosts the game (see GameSession) and relays their messages. Sessions are plain objects served by the NioReactor,
+ * so a single thread hosts thousands of concurrent games; turn timers share a single scheduler thread.
+ *
+ * Protocol: frames (see FrameCodec), over one connection per player. The first frame a player sends is a TEXT frame
+ * "JOIN coin key", where key identifies the game and is the same for both players (see getSessionKey()); every
+ * frame after that is meant for their opponent.
+ */
+public class GameServer implements NioReactor.EventHandler {
+	protected static final int DEFAULT_PORT = 9880;
+	protected static final String JOIN = "JOIN";
+
+	private final NioReactor reactor;
+	private final ServerSocketChannel serverChannel;
+	private final ScheduledExecutorService timer;
+	private final Map<String, GameSession> waiting; // Sessions only one player joined so far; reactor only
+	private final AtomicInteger sessionCount;
+	private final AtomicLong gameCount;
+
+	/**
+	 * Constructor: binds the server without starting it.
+	 * @param address Address to bind to (null for all interfaces).
+	 * @param port Port number to listen on (0 to pick any free port).
+	 */
+	public GameServer(InetAddress address, int port) {
+		this.reactor = NioReactor.getInstance();
+		try {
+			this.serverChannel = ServerSocketChannel.open();
+			this.serverChannel.bind(new InetSocketAddress(address, port), 1024);
+			this.serverChannel.configureBlocking(false);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+
+		this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "GameServer-timer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.waiting = new HashMap<String, GameSession>();
+		this.sessionCount = new AtomicInteger();
+		this.gameCount = new AtomicLong();
+	}
+
+	/**
+	 * Key of the game between two players, the same on both ends.
+	 * @param me Object representing player.
+	 * @param opponent Object representing opponent.
+	 * @return Session key.
+	 */
+	public static String getSessionKey(Player me, Player opponent) {
+		return me.getCoin() == 0 ? me + "|" + opponent : opponent + "|" + me;
+	}
+
+	/**
+	 * First frame a player sends, to join their game.
+	 * @param coin Player's coin.
+	 * @param key Session key.
+	 * @return Frame.
+	 */
+	public static Frame joinFrame(int coin, String key) {
+		return Frame.ofText(JOIN + " " + coin + " " + key);
+	}
+
+	/**
+	 * Start accepting players.
+	 */
+	public void start() {
+		this.reactor.execute(this, () -> {
+			try {
+				this.reactor.register(this.serverChannel, SelectionKey.OP_ACCEPT, this);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+	}
+
+	/**
+	 * Stop accepting players. Games in progress go on until their players leave.
+	 */
+	public void stop() {
+		try {
+			this.serverChannel.close();
+		} catch (IOException e) {
+			// oh well...
+		}
+	}
+
+	/**
+	 * Getter function for the port number the server is bound to.
+	 * @return Port number.
+	 */
+	public int getPort() {
+		return this.serverChannel.socket().getLocalPort();
+	}
+
+	/**
+	 * Getter function for the number of sessions currently hosted (including those waiting for their second player).
+	 * @return Number of sessions.
+	 */
+	public int getSessionCount() {
+		return this.sessionCount.get();
+	}
+
+	/**
+	 * Getter function for the number of sessions over since the server started.
+	 * @return Number of games.
+	 */
+	public long getGameCount() {
+		return this.gameCount.get();
+	}
+
+	/**
+	 * Getter function for the reactor serving the sessions.
+	 * @return Reactor.
+	 */
+	protected NioReactor getReactor() {
+		return this.reactor;
+	}
+
+	@Override
+	public void ready(SelectionKey key) {
+		try {
+			SocketChannel channel;
+			while ((channel = this.serverChannel.accept()) != null) {
+				Client client = new Client();
+				client.channel = FrameChannel.accept(channel, client);
+			}
+		} catch (IOException e) {
+			// Server channel closed: stop accepting.
+			key.cancel();
+		}
+	}
+
+	@Override
+	public void failed(RuntimeException cause) {
+		// Nobody to tell: stop accepting, like when the server channel closes, and have the reactor report it.
+		// Games in progress go on.
+		stop();
+		throw cause;
+	}
+
+	/**
+	 * Seat a player in their session, opening it if they are the first of the two.
+	 * @param client Player.
+	 * @param coin Player's coin.
+	 * @param key Session key.
+	 * @return Session, or null if the player cannot join it.
+	 */
+	private GameSession join(Client client, int coin, String key) {
+		GameSession session = this.waiting.get(key);
+		if (session == null) {
+			session = new GameSession(this, key, this.timer);
+			this.waiting.put(key, session);
+			this.sessionCount.incrementAndGet();
+		}
+
+		if (!session.join(coin, client.channel))
+			return null;
+		if (session.isFull())
+			this.waiting.remove(key);
+		return session;
+	}
+
+	/**
+	 * A session is over.
+	 * @param session Session.
+	 */
+	protected void closed(GameSession session) {
+		this.waiting.remove(session.getKey(), session);
+		this.sessionCount.decrementAndGet();
+		this.gameCount.incrementAndGet();
+	}
+
+	/**
+	 * Connection of one player: waits for them to join, then hands their frames to their session.
+	 */
+	private class Client implements FrameChannel.Handler {
+		private FrameChannel channel;
+		private GameSession session;
+		private int coin;
+
+		@Override
+		public void received(Frame frame) {
+			if (this.session != null) {
+				this.session.received(this.coin, frame);
+				return;
+			}
+
+			// Anything but a join request first is garbage.
+			String[] parts = frame.isText() ? frame.getText().split(" ", 3) : new String[0];
+			try {
+				if (parts.length == 3 && parts[0].equals(JOIN)) {
+					this.coin = Integer.parseInt(parts[1]);
+					this.session = join(this, this.coin, parts[2]);
+				}
+			} catch (NumberFormatException e) {
+				// do nothing - i.e. hang up.
+			}
+			if (this.session == null)
+				this.channel.close();
+		}
+
+		@Override
+		public void closed(IOException cause) {
+			if (this.session != null)
+				this.session.left(this.coin);
+		}
+	}
+
+	/**
+	 * Run the game server on its own.
+	 * @param args Optional port number (defaults to 9880).
+	 */
+	public static void main(String[] args) {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+
+		GameServer server = new GameServer(null, port);
+		server.start();
+		System.out.println("Hosting games on port " + server.getPort());
+
+		// The reactor and timer threads are daemons: keep the JVM alive.
+		try {
+			Thread.currentThread().join();
+		} catch (InterruptedException e) {
+			server.stop();
+		}
+	}
+}
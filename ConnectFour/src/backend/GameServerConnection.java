@@ -0,0 +1,152 @@
+package backend;
+
+import java.io.IOException;
+
+import frontend.MiddleWare;
+
+/**
+ * Client side of the GameServer protocol: a single connection to the server carries the player's messages to
+ * their opponent and the opponent's back. Joins the game as soon as it connects. Also speaks to a RelayServer, which
+ * answers the join request: see PairingListener. The front-end (and the pairing listener) is called in order from
+ * the BackgroundExecutor, not from the reactor (see SerialExecutor).
+ */
+public class GameServerConnection implements FrameChannel.Handler {
+	private final FrameChannel channel;
+	private final FrameReceiver receiver; // Only touched by the callbacks
+	private final SerialExecutor callbacks;
+	private boolean isRejected; // The receiver turned a frame down; only touched by the callbacks
+	private volatile MiddleWare mw;
+	private volatile PairingListener pairing; // Until the relay answers the join request
+	private volatile boolean isClosed;
+
+	/**
+	 * Receiver of the relay's answer to the join request: the opponent joined too, or the relay could not be reached
+	 * or hung up before they did. Until then, nothing reaches the front-end; if the answer is no, the front-end is not
+	 * told either, the listener is.
+	 */
+	public interface PairingListener {
+		/**
+		 * The opponent joined the relay: frames go through from now on.
+		 */
+		public void paired();
+
+		/**
+		 * The opponent did not join the relay in time, or the relay could not be reached: the connection is closed.
+		 */
+		public void unpaired();
+	}
+
+	/**
+	 * Constructor: connects to the server and joins the game. Messages sent in the meantime are written once connected.
+	 * @param address Address of the game server as host:port.
+	 * @param coin Player's coin.
+	 * @param key Session key (see GameServer.getSessionKey()).
+	 * @param mw Means of communicating the information with the front-end.
+	 */
+	public GameServerConnection(String address, int coin, String key, MiddleWare mw) {
+		this(address, coin, key, mw, null);
+	}
+
+	/**
+	 * Constructor: connects to a relay and joins the game. Messages sent in the meantime are held by the relay until
+	 * the opponent joins.
+	 * @param address Address of the relay as host:port.
+	 * @param coin Player's coin.
+	 * @param key Session key (see GameServer.getSessionKey()).
+	 * @param mw Means of communicating the information with the front-end.
+	 * @param pairing Receiver of the relay's answer to the join request (null for a game server, which sends none).
+	 */
+	public GameServerConnection(String address, int coin, String key, MiddleWare mw, PairingListener pairing) {
+		this.mw = mw;
+		this.receiver = new FrameReceiver();
+		this.callbacks = new SerialExecutor();
+		this.pairing = pairing;
+
+		int separator = address.lastIndexOf(':');
+		if (separator < 0)
+			throw new RuntimeException("Error, the game server address: '" + address + "' has an unexpected format");
+
+		FrameChannel channel = null;
+		try {
+			channel = FrameChannel.connect(address.substring(0, separator), Integer.parseInt(address.substring(separator + 1)), this);
+			channel.send(GameServer.joinFrame(coin, key));
+		} catch (IOException e) {
+			this.isClosed = true;
+			if (pairing != null)
+				pairing.unpaired();
+			else
+				mw.transferFail();
+		}
+		this.channel = channel;
+	}
+
+	/**
+	 * In case the view changes and the same connection is needed, use this method.
+	 * @param mw New means of interfacing with the front-end.
+	 */
+	public void setMiddleWare(MiddleWare mw) {
+		this.mw = mw;
+	}
+
+	/**
+	 * Send several frames at once: they are written together, in a single write if the socket can take it.
+	 * @param frames Frames to be transmitted, in order.
+	 */
+	public void send(Frame[] frames) {
+		// If there is no connection to write to, error out, unless the relay turned the player down: that is news for
+		// the pairing listener only.
+		if (this.isClosed) {
+			if (this.pairing == null)
+				this.mw.transferFail();
+			return;
+		}
+
+		this.channel.send(frames);
+	}
+
+	/**
+	 * Finish writing the pending messages, then hang up on the server.
+	 */
+	public void close() {
+		// Hanging up is no answer from the relay.
+		this.pairing = null;
+		this.isClosed = true;
+		if (this.channel != null)
+			this.channel.close();
+	}
+
+	@Override
+	public void received(Frame frame) {
+		PairingListener pairing = this.pairing;
+		if (pairing != null) {
+			// The relay's answer comes first, and only once. Anything else means the opponent is there all the same.
+			this.pairing = null;
+			this.callbacks.execute(pairing::paired);
+			if (frame.isText() && frame.getText().equals(RelayServer.PAIRED))
+				return;
+		}
+
+		this.callbacks.execute(() -> {
+			if (this.isRejected)
+				return;
+			if (!this.receiver.receive(frame, this.mw)) {
+				this.isRejected = true;
+				close();
+			}
+		});
+	}
+
+	@Override
+	public void closed(IOException cause) {
+		this.isClosed = true;
+		PairingListener pairing = this.pairing;
+		if (pairing != null) {
+			this.callbacks.execute(pairing::unpaired);
+			return;
+		}
+
+		// The server tells the player about anything that matters before hanging up: only a failure is news.
+		if (cause != null)
+			this.callbacks.execute(() -> this.mw.transferFail());
+	}
+}
@@ -0,0 +1,234 @@
+package backend;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import frontend.MessageHandler;
+
+/**
+ * One game hosted by the GameServer: the two players' connections, the server's own copy of the board and the
+ * turn timer. Frames are relayed from one player to the other, but moves are checked against the board first:
+ * a player moving out of turn, in a full column or from a board that does not match the server's is cut off, and
+ * their opponent is told they disconnected. So is a player who lets their turn time run out without a word.
+ *
+ * Seat 0 holds the coin 0 player, who plays color 1 and moves first (see WindowFrame.startGame()).
+ *
+ * Only ever touched from the NioReactor, apart from the timer which hands its work over to the reactor.
+ */
+public class GameSession {
+	protected static final int TURN_TIME = 45; // Same as GameLogic.TURN_TIME, in seconds
+	protected static final int LEEWAY_TIME = 5; // Same as GameLogic.LEEWAY_TIME, in seconds
+
+	private final GameServer server;
+	private final String key;
+	private final ScheduledExecutorService timer;
+	private final GameBoard board;
+	private final FrameChannel[] seats;
+	private final List<List<Frame>> pending; // Frames for a seat nobody has taken yet
+	private final long[] lastCheck; // Check value each player last sent
+	private int turn; // Seat whose turn it is
+	private int moves; // Number of moves played, to tell stale timeouts apart
+	private ScheduledFuture<?> timeout;
+	private boolean isOver;
+	private boolean isClosed;
+
+	/**
+	 * Constructor: empty board, nobody seated.
+	 * @param server Server hosting the session.
+	 * @param key Key both players join the session with.
+	 * @param timer Scheduler of the turn timer.
+	 */
+	protected GameSession(GameServer server, String key, ScheduledExecutorService timer) {
+		this.server = server;
+		this.key = key;
+		this.timer = timer;
+		this.board = new GameBoard();
+		this.seats = new FrameChannel[2];
+		this.pending = new ArrayList<List<Frame>>();
+		this.pending.add(new ArrayList<Frame>());
+		this.pending.add(new ArrayList<Frame>());
+		this.lastCheck = new long[] {-1, -1};
+		this.turn = 0;
+	}
+
+	/**
+	 * Getter function for the key the players join the session with.
+	 * @return Key.
+	 */
+	public String getKey() {
+		return this.key;
+	}
+
+	/**
+	 * Seat a player. Whatever their opponent sent before is delivered right away.
+	 * @param coin Player's coin, i.e. their seat.
+	 * @param channel Player's connection.
+	 * @return False if the seat is taken or the session is over, true otherwise.
+	 */
+	protected boolean join(int coin, FrameChannel channel) {
+		if (coin < 0 || coin > 1 || this.seats[coin] != null || this.isClosed)
+			return false;
+
+		this.seats[coin] = channel;
+		List<Frame> frames = this.pending.get(coin);
+		if (!frames.isEmpty()) {
+			channel.send(frames.toArray(new Frame[frames.size()]));
+			frames.clear();
+		}
+
+		// Also run out the clock on an opponent who never shows up.
+		resetTimer();
+		return true;
+	}
+
+	/**
+	 * Whether both players are seated.
+	 * @return True if both seats are taken, false otherwise.
+	 */
+	protected boolean isFull() {
+		return this.seats[0] != null && this.seats[1] != null;
+	}
+
+	/**
+	 * Handle a frame from a player: check it, then relay it to their opponent.
+	 * @param coin Seat of the player.
+	 * @param frame Frame received.
+	 */
+	protected void received(int coin, Frame frame) {
+		if (this.isClosed)
+			return;
+
+		if (frame.getVersion() != Frame.VERSION) {
+			forfeit(coin);
+			return;
+		}
+
+		if (frame.isCheck()) {
+			// Players only send check values along with their moves, computed on the board the move is played on.
+			if (frame.getCheck() != this.board.getCheckNumber()) {
+				forfeit(coin);
+				return;
+			}
+			this.lastCheck[coin] = frame.getCheck();
+		} else if (frame.isInt()) {
+			int data = frame.getInt();
+			if (data >= 0 && data < GameBoard.COLUMNS) {
+				if (!play(coin, data)) {
+					forfeit(coin);
+					return;
+				}
+			} else if (data == MessageHandler.TIME_OUT_SYNC) {
+				// The player ran out of time on their own turn: their opponent wins.
+				end();
+			}
+		}
+
+		relay(1 - coin, frame);
+	}
+
+	/**
+	 * Play a move on the server's board, if it is legal.
+	 * @param coin Seat of the player moving.
+	 * @param column Column played.
+	 * @return False if the move is not legal, true otherwise.
+	 */
+	private boolean play(int coin, int column) {
+		if (this.isOver || coin != this.turn || !this.board.canPlay(column))
+			return false;
+		// The check value is that of the board the move was played on.
+		if (this.lastCheck[coin] != this.board.getCheckNumber())
+			return false;
+
+		this.board.play(column, coin + 1);
+		this.moves++;
+		this.turn = 1 - this.turn;
+
+		if (this.board.getWinner() != GameBoard.NOBODY)
+			end();
+		else
+			resetTimer();
+		return true;
+	}
+
+	/**
+	 * Deliver a frame to a player, or keep it until they are seated.
+	 * @param coin Seat of the player.
+	 * @param frame Frame.
+	 */
+	private void relay(int coin, Frame frame) {
+		if (this.seats[coin] != null)
+			this.seats[coin].send(frame);
+		else
+			this.pending.get(coin).add(frame);
+	}
+
+	/**
+	 * (Re)start the turn timer of the player whose turn it is. They get the same time the clients give them, and
+	 * the same leeway.
+	 */
+	private void resetTimer() {
+		if (this.timeout != null)
+			this.timeout.cancel(false);
+
+		int moves = this.moves;
+		this.timeout = this.timer.schedule(() -> this.server.getReactor().execute(() -> expire(moves)),
+				TURN_TIME + LEEWAY_TIME, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * The turn timer ran out: if nothing was played in the meantime, the player whose turn it is is gone (or the
+	 * one who never joined).
+	 * @param moves Number of moves played when the timer was started.
+	 */
+	private void expire(int moves) {
+		if (this.isOver || moves != this.moves)
+			return;
+
+		if (this.seats[this.turn] == null || isFull())
+			forfeit(this.turn);
+		else
+			forfeit(1 - this.turn);
+	}
+
+	/**
+	 * The game is decided: stop the timer. The players stay connected (and relayed) until they leave.
+	 */
+	private void end() {
+		this.isOver = true;
+		if (this.timeout != null)
+			this.timeout.cancel(false);
+	}
+
+	/**
+	 * Cut a player off and tell their opponent they disconnected.
+	 * @param coin Seat of the player.
+	 */
+	private void forfeit(int coin) {
+		left(coin);
+		if (this.seats[coin] != null)
+			this.seats[coin].close();
+	}
+
+	/**
+	 * A player's connection is closed. If the game is not decided yet, their opponent is told they disconnected;
+	 * either way, the opponent is hung up on once everything they were sent is written, and the session is over.
+	 * @param coin Seat of the player.
+	 */
+	protected void left(int coin) {
+		if (this.isClosed)
+			return;
+		this.isClosed = true;
+
+		FrameChannel opponent = this.seats[1 - coin];
+		if (!this.isOver)
+			relay(1 - coin, Frame.ofInt(MessageHandler.DISCONNECT_SIGNAL));
+		end();
+
+		if (opponent != null)
+			opponent.close();
+		this.server.closed(this);
+	}
+}
@@ -0,0 +1,325 @@
+package backend;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * File storage on a web server: files are fetched directly from the base URL and modified through the
+ * write.php, append.php, remove.php and delete.php scripts sitting next to them (see the server directory).
+ *
+ * Every request goes through the JDK's HTTP keep-alive connection cache: the response is always read to the end
+ * and closed, which hands the connection back to the cache so that the next poll skips the TCP handshake. The
+ * launcher sizes the cache (see configureConnectionCache()).
+ *
+ * Reads are conditional: the validators (ETag, or Last-Modified if the server sends no ETag) of the last
+ * contents read are kept per file, and a 304 Not Modified answer returns those contents without transferring
+ * the file again. This is what makes polling a file that rarely changes cheap. Better still, awaitChange() sends
+ * a validator to watch.php, which holds the request until the file changes (long polling). That one is not the
+ * web server's ETag, which watch.php has no way to compute, but the MD5 of the contents the caller last saw: both
+ * ends can compute it from the contents alone (see contentTag()). It belongs to the caller, not to the storage:
+ * two callers watching a same file (e.g. both players in one process) have each seen a different version.
+ */
+public class HttpFileStorage implements FileStorage {
+	protected static final String PHP_WRITE_FILE = "write.php";
+	protected static final String PHP_APPEND_FILE = "append.php";
+	protected static final String PHP_REMOVE_FILE = "remove.php";
+	protected static final String PHP_DELETE_FILE = "delete.php";
+	protected static final String PHP_WATCH_FILE = "watch.php";
+
+	protected static final int CONNECT_TIMEOUT_MS = 5000;
+	protected static final int READ_TIMEOUT_MS = 10000;
+	protected static final String MAX_CONNECTIONS_PROPERTY = "http.maxConnections";
+	protected static final String MAX_CONNECTIONS = "16"; // Idle connections kept alive per host
+
+	private final String baseUrl;
+	private final URL phpWriteUrl;
+	private final URL phpAppendUrl;
+	private final URL phpRemoveUrl;
+	private final URL phpDeleteUrl;
+	private final ConcurrentMap<String, CachedFile> cache;
+	private final ConcurrentMap<HttpURLConnection, String> watches; // Long polls in progress, and the file watched
+
+	/**
+	 * Constructor: sets up the URLs of the files and scripts.
+	 * @param baseUrl URL of the directory holding the files and the PHP scripts (e.g. http://cs.mcgill.ca/~fglozm/).
+	 */
+	public HttpFileStorage(String baseUrl) {
+		this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+		this.phpWriteUrl = toURL(this.baseUrl + PHP_WRITE_FILE);
+		this.phpAppendUrl = toURL(this.baseUrl + PHP_APPEND_FILE);
+		this.phpRemoveUrl = toURL(this.baseUrl + PHP_REMOVE_FILE);
+		this.phpDeleteUrl = toURL(this.baseUrl + PHP_DELETE_FILE);
+		this.cache = new ConcurrentHashMap<String, CachedFile>();
+		this.watches = new ConcurrentHashMap<HttpURLConnection, String>();
+	}
+
+	/**
+	 * Keep up to MAX_CONNECTIONS idle connections per host in the JDK's keep-alive cache instead of its default of 5,
+	 * unless http.maxConnections is set already. The setting is JVM-wide and only read once, before the first
+	 * connection is opened: launchers call this first thing, and leave it alone when they share the process.
+	 */
+	public static void configureConnectionCache() {
+		if (System.getProperty(MAX_CONNECTIONS_PROPERTY) == null)
+			System.setProperty(MAX_CONNECTIONS_PROPERTY, MAX_CONNECTIONS);
+	}
+
+	/**
+	 * Getter function for the base URL.
+	 * @return URL of the directory holding the files and the PHP scripts.
+	 */
+	public String getBaseUrl() {
+		return this.baseUrl;
+	}
+
+	/**
+	 * Parse a URL, turning the checked exception into a runtime one.
+	 * @param urlString URL as a string.
+	 * @return Parsed URL.
+	 */
+	private static URL toURL(String urlString) {
+		try {
+			return new URL(urlString);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Read a stream to the end and close it. Reading to the end is what allows the connection to be reused.
+	 * @param in Stream to drain (may be null).
+	 * @return Everything that was read.
+	 */
+	private static byte[] drain(InputStream in) throws IOException {
+		if (in == null)
+			return new byte[0];
+
+		try {
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			byte[] chunk = new byte[4096];
+			int read;
+			while ((read = in.read(chunk)) != -1)
+				buffer.write(chunk, 0, read);
+			return buffer.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Open a connection with the timeouts set.
+	 * @param url URL to connect to.
+	 * @return Connection, not yet connected.
+	 */
+	private static HttpURLConnection open(URL url) throws IOException {
+		HttpURLConnection con = (HttpURLConnection) url.openConnection();
+		con.setConnectTimeout(CONNECT_TIMEOUT_MS);
+		con.setReadTimeout(READ_TIMEOUT_MS);
+		con.setUseCaches(false);
+		return con;
+	}
+
+	/**
+	 * Finish an exchange: drain the response (or the error response) so the connection goes back to the cache.
+	 * @param con Connection whose request has been sent.
+	 * @param what Description of the request, for error messages.
+	 * @return Body of the response.
+	 */
+	private static byte[] finish(HttpURLConnection con, String what) throws IOException {
+		int status = con.getResponseCode();
+
+		if (status >= 400) {
+			drain(con.getErrorStream());
+			if (status == HttpURLConnection.HTTP_NOT_FOUND)
+				throw new FileNotFoundException(what);
+			throw new IOException("Server returned HTTP " + status + " for " + what);
+		}
+
+		return drain(con.getInputStream());
+	}
+
+	/**
+	 * Send a PHP request to a specific script.
+	 * @param url URL indicating where the PHP file is stored.
+	 * @param input Parameters to pass to the PHP script.
+	 */
+	private static void phpRequest(URL url, String input) {
+		try {
+			byte[] body = input.getBytes(StandardCharsets.UTF_8);
+
+			HttpURLConnection con = open(url);
+			con.setRequestMethod("POST");
+			con.setDoOutput(true);
+
+			OutputStream out = con.getOutputStream();
+			out.write(body);
+			out.close();
+
+			finish(con, url.toString());
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Entity tag watch.php gives a version of a file: the MD5 of its contents, in hexadecimal and quoted.
+	 * @param contents Contents of the file.
+	 * @return Quoted entity tag.
+	 */
+	protected static String contentTag(byte[] contents) {
+		try {
+			byte[] digest = MessageDigest.getInstance("MD5").digest(contents);
+			StringBuilder tag = new StringBuilder("\"");
+			for (byte b : digest)
+				tag.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			return tag.append('"').toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Conditional GET of a file, using and updating the cached validators of the file.
+	 * @param fileName Name of the file.
+	 * @return The contents of the file as a string.
+	 */
+	private String conditionalGet(String fileName) {
+		CachedFile cached = this.cache.get(fileName);
+
+		try {
+			HttpURLConnection con = open(toURL(this.baseUrl + fileName));
+			if (cached != null) {
+				if (cached.etag != null)
+					con.setRequestProperty("If-None-Match", cached.etag);
+				else
+					con.setRequestProperty("If-Modified-Since", cached.lastModified);
+			}
+
+			if (cached != null && con.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+				drain(con.getInputStream());
+				return cached.contents;
+			}
+
+			String contents = new String(finish(con, fileName), StandardCharsets.UTF_8);
+
+			String etag = con.getHeaderField("ETag");
+			String lastModified = con.getHeaderField("Last-Modified");
+			// Last-Modified only has a one second resolution: it cannot tell apart two versions written within the
+			// same second, so it is only trusted once the file has been left alone for a full second.
+			if (etag == null && con.getDate() - con.getLastModified() < 1000)
+				lastModified = null;
+
+			if (etag != null || lastModified != null)
+				this.cache.put(fileName, new CachedFile(etag, lastModified, contents));
+			else
+				this.cache.remove(fileName);
+
+			return contents;
+		} catch (FileNotFoundException e) {
+			this.cache.remove(fileName);
+			throw new RuntimeException(e);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public String read(String fileName) {
+		return conditionalGet(fileName);
+	}
+
+	@Override
+	public String awaitChange(String fileName, String known, long timeoutMs) {
+		HttpURLConnection con = null;
+		try {
+			URL url = toURL(this.baseUrl + PHP_WATCH_FILE + "?file=" + URLEncoder.encode(fileName, "UTF-8") + "&timeout=" + timeoutMs);
+			con = open(url);
+			con.setReadTimeout((int) timeoutMs + READ_TIMEOUT_MS);
+			this.watches.put(con, fileName);
+			if (known != null)
+				con.setRequestProperty("If-None-Match", contentTag(known.getBytes(StandardCharsets.UTF_8)));
+
+			if (known != null && con.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+				drain(con.getInputStream());
+				return known;
+			}
+
+			return new String(finish(con, fileName), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			if (con != null)
+				this.watches.remove(con);
+		}
+	}
+
+	@Override
+	public void cancelAwait(String fileName) {
+		// Closing the socket is the only way to wake up a thread blocked reading it.
+		for (Map.Entry<HttpURLConnection, String> watch : this.watches.entrySet())
+			if (watch.getValue().equals(fileName))
+				watch.getKey().disconnect();
+	}
+
+	@Override
+	public void write(String fileName, String data) {
+		phpRequest(this.phpWriteUrl, fileName + ":" + data);
+		this.cache.remove(fileName);
+	}
+
+	@Override
+	public void append(String fileName, String line) {
+		phpRequest(this.phpAppendUrl, fileName + ":" + line);
+		this.cache.remove(fileName);
+	}
+
+	@Override
+	public void removeLines(String fileName, String[] lines) {
+		phpRequest(this.phpRemoveUrl, fileName + ":" + String.join("\n", lines));
+		this.cache.remove(fileName);
+	}
+
+	@Override
+	public void delete(String fileName) {
+		phpRequest(this.phpDeleteUrl, fileName);
+		this.cache.remove(fileName);
+	}
+
+	@Override
+	public boolean exists(String fileName) {
+		try {
+			read(fileName);
+			return true;
+		} catch (RuntimeException e) {
+			if (e.getCause() instanceof FileNotFoundException)
+				return false;
+			throw e;
+		}
+	}
+
+	/**
+	 * Contents of a file as last read, along with the validators the server sent with them.
+	 */
+	private static class CachedFile {
+		private final String etag;
+		private final String lastModified;
+		private final String contents;
+
+		private CachedFile(String etag, String lastModified, String contents) {
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.contents = contents;
+		}
+	}
+}
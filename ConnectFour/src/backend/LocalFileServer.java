@@ -0,0 +1,462 @@
+package backend;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Embedded stand-in for the SOCS web server. Serves the text files of a local directory and implements the same
+ * write.php, append.php, remove.php and delete.php semantics as the scripts in the server directory, so that the
+ * player pool and the server fallback can be run (and load tested) without touching the real host. Point an
+ * HttpFileStorage at getBaseUrl() to use it.
+ *
+ * Like a regular web server, files are served with an ETag and a Last-Modified header and conditional requests
+ * are answered with 304 Not Modified. The ETag is a per-file version number bumped on every modification, so
+ * answering a conditional request does not even require reading the file. watch.php is the long-polling flavour
+ * of a conditional GET: the request is held until the file's version changes or the timeout expires.
+ */
+public class LocalFileServer {
+	protected static final int DEFAULT_PORT = 8080;
+	protected static final String TEXT_FILE_EXTENSION = ".txt";
+	protected static final long MAX_WATCH_TIMEOUT_MS = 20000; // Same cap as watch.php
+	protected static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+	private final Path root;
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final FileHandler fileHandler;
+	private final ConcurrentMap<Path, Object> fileLocks;
+	private final ConcurrentMap<Path, Long> versions;
+	private final long epoch; // Tells versions of a previous run of the server apart
+
+	/**
+	 * Constructor: binds the server to the loopback interface without starting it.
+	 * @param root Directory in which the files are stored.
+	 * @param port Port number to listen on (0 to pick any free port).
+	 */
+	public LocalFileServer(Path root, int port) {
+		this.root = root.toAbsolutePath().normalize();
+		this.fileLocks = new ConcurrentHashMap<Path, Object>();
+		this.versions = new ConcurrentHashMap<Path, Long>();
+		this.epoch = System.currentTimeMillis();
+
+		try {
+			Files.createDirectories(this.root);
+			this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+
+		// One thread per request in flight, otherwise every client would be served one at a time.
+		this.executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "LocalFileServer");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		this.fileHandler = new FileHandler();
+		this.server.setExecutor(this.executor);
+		this.server.createContext("/", this.fileHandler);
+		this.server.createContext("/" + HttpFileStorage.PHP_WRITE_FILE, new WriteHandler());
+		this.server.createContext("/" + HttpFileStorage.PHP_APPEND_FILE, new AppendHandler());
+		this.server.createContext("/" + HttpFileStorage.PHP_REMOVE_FILE, new RemoveHandler());
+		this.server.createContext("/" + HttpFileStorage.PHP_DELETE_FILE, new DeleteHandler());
+		this.server.createContext("/" + HttpFileStorage.PHP_WATCH_FILE, new WatchHandler());
+	}
+
+	/**
+	 * Start serving requests.
+	 */
+	public void start() {
+		this.server.start();
+	}
+
+	/**
+	 * Stop serving requests and release the port.
+	 */
+	public void stop() {
+		this.server.stop(0);
+		this.executor.shutdownNow();
+	}
+
+	/**
+	 * Turn off Nagle's algorithm in the JDK's HTTP server, unless sun.net.httpserver.nodelay is set already: otherwise
+	 * it holds back the response body behind its headers, which adds ~40 ms to every non-empty response. The setting
+	 * is JVM-wide and only read when the first server is created: launchers call this first thing, and leave it alone
+	 * when they share the process.
+	 */
+	public static void configureNoDelay() {
+		if (System.getProperty(NO_DELAY_PROPERTY) == null)
+			System.setProperty(NO_DELAY_PROPERTY, "true");
+	}
+
+	/**
+	 * Getter function for the port number the server is bound to.
+	 * @return Port number.
+	 */
+	public int getPort() {
+		return this.server.getAddress().getPort();
+	}
+
+	/**
+	 * Getter function for the URL under which the files and scripts are served.
+	 * @return Base URL, to be handed to an HttpFileStorage.
+	 */
+	public String getBaseUrl() {
+		return "http://127.0.0.1:" + getPort() + "/";
+	}
+
+	/**
+	 * Resolve a file name sent by a client to a file inside the root directory. Mirrors the PHP scripts,
+	 * which only touch .txt files, and additionally refuses anything that would escape the directory.
+	 * @param fileName File name as sent by the client.
+	 * @return Path of the file, or null if the name is not acceptable.
+	 */
+	private Path resolve(String fileName) {
+		if (fileName == null || !fileName.contains(TEXT_FILE_EXTENSION) || fileName.contains("/") || fileName.contains("\\"))
+			return null;
+
+		Path path = this.root.resolve(fileName).normalize();
+		return path.getParent().equals(this.root) ? path : null;
+	}
+
+	/**
+	 * Lock serializing the modifications of one file (the equivalent of flock in the PHP scripts).
+	 * @param path Path of the file.
+	 * @return Lock object of the file.
+	 */
+	private Object lockOf(Path path) {
+		return this.fileLocks.computeIfAbsent(path, p -> new Object());
+	}
+
+	/**
+	 * Record that a file has been modified and wake up the requests watching it. Must be called with the lock
+	 * of the file held, after the modification.
+	 * @param path Path of the file.
+	 */
+	private void modified(Path path) {
+		this.versions.merge(path, 1L, Long::sum);
+		lockOf(path).notifyAll();
+	}
+
+	/**
+	 * Entity tag of the current version of a file.
+	 * @param path Path of the file.
+	 * @return Quoted entity tag.
+	 */
+	private String etagOf(Path path) {
+		return "\"" + Long.toHexString(this.epoch) + "-" + this.versions.getOrDefault(path, 0L) + "\"";
+	}
+
+	/**
+	 * Replace the contents of a file through a temporary file and an atomic move, so that readers (who do not
+	 * lock) always see either the old or the new contents in full.
+	 * @param path Path of the file.
+	 * @param contents New contents.
+	 */
+	private static void replace(Path path, String contents) throws IOException {
+		Path temporary = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+		Files.write(temporary, contents.getBytes(StandardCharsets.UTF_8));
+		Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Read the contents of a file, treating a missing file as empty.
+	 * @param path Path of the file.
+	 * @return Contents of the file.
+	 */
+	private static String readIfExists(Path path) throws IOException {
+		try {
+			return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+		} catch (NoSuchFileException e) {
+			return "";
+		}
+	}
+
+	/**
+	 * Read the whole request body as a string.
+	 * @param exchange HTTP exchange.
+	 * @return Request body.
+	 */
+	private static String readBody(HttpExchange exchange) throws IOException {
+		InputStream in = exchange.getRequestBody();
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		byte[] chunk = new byte[4096];
+		int read;
+		while ((read = in.read(chunk)) != -1)
+			buffer.write(chunk, 0, read);
+		in.close();
+		return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Send a response and close the exchange.
+	 * @param exchange HTTP exchange.
+	 * @param status HTTP status code.
+	 * @param body Response body (may be empty).
+	 */
+	private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+		if (body.length > 0) {
+			OutputStream out = exchange.getResponseBody();
+			out.write(body);
+			out.close();
+		}
+		exchange.close();
+	}
+
+	/**
+	 * Serves the files themselves (GET), 404 if they do not exist and 304 if the client's copy is up to date.
+	 */
+	private class FileHandler implements HttpHandler {
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			serve(exchange, resolve(exchange.getRequestURI().getPath().substring(1)));
+		}
+
+		/**
+		 * Answer a (possibly conditional) GET of a file.
+		 * @param exchange HTTP exchange.
+		 * @param path Path of the file, null if the requested name was not acceptable.
+		 */
+		private void serve(HttpExchange exchange, Path path) throws IOException {
+			if (path == null) {
+				respond(exchange, 404, new byte[0]);
+				return;
+			}
+
+			// The version is looked up before the contents are read: at worst, new contents get an old tag,
+			// which only costs the client one more full read later on.
+			String etag = etagOf(path);
+
+			try {
+				Instant lastModified = Files.getLastModifiedTime(path).toInstant();
+				exchange.getResponseHeaders().set("ETag", etag);
+				exchange.getResponseHeaders().set("Last-Modified", DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.ofInstant(lastModified, ZoneOffset.UTC)));
+
+				if (notModified(exchange, etag, lastModified)) {
+					respond(exchange, 304, new byte[0]);
+					return;
+				}
+
+				respond(exchange, 200, Files.readAllBytes(path));
+			} catch (NoSuchFileException e) {
+				exchange.getResponseHeaders().remove("ETag");
+				exchange.getResponseHeaders().remove("Last-Modified");
+				respond(exchange, 404, new byte[0]);
+			}
+		}
+
+		/**
+		 * Evaluate the conditional headers of a request: If-None-Match if present, If-Modified-Since otherwise.
+		 * @param exchange HTTP exchange.
+		 * @param etag Current entity tag of the file.
+		 * @param lastModified Current modification time of the file.
+		 * @return True if the client already has the current version.
+		 */
+		private boolean notModified(HttpExchange exchange, String etag, Instant lastModified) {
+			String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+			if (ifNoneMatch != null)
+				return ifNoneMatch.equals(etag);
+
+			String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+			if (ifModifiedSince == null)
+				return false;
+
+			try {
+				Instant since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+				return lastModified.getEpochSecond() <= since.getEpochSecond();
+			} catch (DateTimeParseException e) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Same as watch.php: ?file=name&timeout=ms with the MD5 of the client's copy in If-None-Match. Answers as soon
+	 * as the file no longer matches it, or with 304 once the timeout expires.
+	 */
+	private class WatchHandler implements HttpHandler {
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			String fileName = null;
+			long timeoutMs = 0;
+
+			String query = exchange.getRequestURI().getRawQuery();
+			if (query != null) {
+				for (String parameter : query.split("&")) {
+					String[] pair = parameter.split("=", 2);
+					String value = pair.length > 1 ? URLDecoder.decode(pair[1], "UTF-8") : "";
+					if (pair[0].equals("file"))
+						fileName = value;
+					else if (pair[0].equals("timeout"))
+						timeoutMs = Math.min(Long.parseLong(value), MAX_WATCH_TIMEOUT_MS);
+				}
+			}
+
+			Path path = resolve(fileName);
+			if (path == null) {
+				respond(exchange, 404, new byte[0]);
+				return;
+			}
+
+			// Same tags as watch.php, made up from the contents, since that is all a client can send back: the
+			// file is read again each time it is modified, until it no longer matches or the time is up.
+			String known = exchange.getRequestHeaders().getFirst("If-None-Match");
+			byte[] contents;
+			String etag;
+			Object lock = lockOf(path);
+			long deadline = System.currentTimeMillis() + timeoutMs;
+			try {
+				synchronized (lock) {
+					long remaining;
+					while ((etag = HttpFileStorage.contentTag(contents = Files.readAllBytes(path))).equals(known)
+							&& (remaining = deadline - System.currentTimeMillis()) > 0) {
+						try {
+							lock.wait(remaining);
+						} catch (InterruptedException e) {
+							// Server is stopping: answer with whatever there is.
+							break;
+						}
+					}
+				}
+			} catch (NoSuchFileException e) {
+				respond(exchange, 404, new byte[0]);
+				return;
+			}
+
+			exchange.getResponseHeaders().set("ETag", etag);
+			if (etag.equals(known))
+				respond(exchange, 304, new byte[0]);
+			else
+				respond(exchange, 200, contents);
+		}
+	}
+
+	/**
+	 * Same as write.php: the body is fileName:data, the file is created if need be and overwritten.
+	 */
+	private class WriteHandler implements HttpHandler {
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			String[] parts = readBody(exchange).split(":", 2);
+			Path path = resolve(parts[0]);
+
+			if (path != null) {
+				synchronized (lockOf(path)) {
+					replace(path, parts.length > 1 ? parts[1] : "");
+					modified(path);
+				}
+			}
+
+			respond(exchange, 200, new byte[0]);
+		}
+	}
+
+	/**
+	 * Same as append.php: the body is fileName:line, the line is trimmed and appended with a line break.
+	 */
+	private class AppendHandler implements HttpHandler {
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			String[] parts = readBody(exchange).split(":", 2);
+			Path path = resolve(parts[0]);
+			String line = parts.length > 1 ? parts[1].trim() : "";
+
+			if (path != null && line.length() > 0) {
+				synchronized (lockOf(path)) {
+					replace(path, readIfExists(path) + line + "\n");
+					modified(path);
+				}
+			}
+
+			respond(exchange, 200, new byte[0]);
+		}
+	}
+
+	/**
+	 * Same as remove.php: the body is fileName:line1\nline2..., every instance of those lines is removed.
+	 */
+	private class RemoveHandler implements HttpHandler {
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			String[] parts = readBody(exchange).split(":", 2);
+			Path path = resolve(parts[0]);
+			Set<String> linesToRemove = new HashSet<String>(Arrays.asList((parts.length > 1 ? parts[1] : "").split("\n")));
+
+			if (path != null) {
+				synchronized (lockOf(path)) {
+					if (Files.exists(path)) {
+						StringBuilder kept = new StringBuilder();
+						for (String line : readIfExists(path).split("\n"))
+							if (line.length() > 0 && !linesToRemove.contains(line))
+								kept.append(line).append('\n');
+						replace(path, kept.toString());
+						modified(path);
+					}
+				}
+			}
+
+			respond(exchange, 200, new byte[0]);
+		}
+	}
+
+	/**
+	 * Same as delete.php: the body is the name of the file to delete.
+	 */
+	private class DeleteHandler implements HttpHandler {
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			Path path = resolve(readBody(exchange));
+
+			if (path != null) {
+				synchronized (lockOf(path)) {
+					Files.deleteIfExists(path);
+					modified(path);
+				}
+			}
+
+			respond(exchange, 200, new byte[0]);
+		}
+	}
+
+	/**
+	 * Run the stand-in server on its own.
+	 * @param args Optional directory to serve (defaults to the working directory) and port number (defaults to 8080).
+	 */
+	public static void main(String[] args) {
+		configureNoDelay();
+		Path root = Paths.get(args.length > 0 ? args[0] : ".");
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+
+		LocalFileServer server = new LocalFileServer(root, port);
+		server.start();
+		System.out.println("Serving " + root.toAbsolutePath() + " at " + server.getBaseUrl());
+	}
+}
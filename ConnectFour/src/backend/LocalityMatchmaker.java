@@ -0,0 +1,295 @@
+package backend;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Matchmaking that prefers opponents in the same subnet, since only those get the direct socket connection (see
+ * NetworkConfiguration) instead of going through the server.
+ *
+ * A player joining is paired right away with a player waiting in their subnet. Failing that, they are paired with a
+ * player waiting in the MatchmakingEngine, i.e. one who already waited out their window. Otherwise they wait in
+ * their subnet's bucket for up to the wait window, then are handed to the engine, where anybody can be paired with
+ * them: nobody waits for a local opponent for longer than the window. As in the engine, a player who was waiting and
+ * cannot be told about their match is dropped, and the player who joined looks for another opponent.
+ *
+ * Buckets are keyed by Player.getSubnetKey() and guarded by a lock that is only held to look them up or update them;
+ * matches are always completed, and listeners called, outside of it.
+ */
+public class LocalityMatchmaker {
+	public static final long DEFAULT_WINDOW_MS = 1000;
+
+	/**
+	 * A player's place in the queue; can be used to leave it.
+	 */
+	public static class Ticket {
+		private final Player player;
+		private final MatchmakingEngine.MatchListener listener;
+		private ScheduledFuture<?> expiry; // Guarded by the buckets, like inBucket
+		private boolean inBucket;
+		private volatile boolean cancelled;
+		private volatile MatchmakingEngine.Ticket engineTicket; // Once handed to the engine
+
+		private Ticket(Player player, MatchmakingEngine.MatchListener listener) {
+			this.player = player;
+			this.listener = listener;
+		}
+	}
+
+	private final MatchmakingEngine engine;
+	private final long window;
+	private final Map<Long, ArrayDeque<Ticket>> buckets;
+	private final ScheduledExecutorService timer;
+	private final AtomicLong localMatches;
+	private final AtomicLong sameSubnetMatches;
+
+	/**
+	 * Constructor: sets up empty buckets.
+	 * @param window Longest time a player waits for an opponent in their subnet, in milliseconds (0 to match
+	 * whoever comes first, like the MatchmakingEngine alone).
+	 */
+	public LocalityMatchmaker(long window) {
+		this.engine = new MatchmakingEngine();
+		this.window = window;
+		this.buckets = new HashMap<Long, ArrayDeque<Ticket>>();
+		this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "LocalityMatchmaker");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.localMatches = new AtomicLong();
+		this.sameSubnetMatches = new AtomicLong();
+	}
+
+	/**
+	 * Get in line. The coin value of the player is only a preference: they take whichever coin gets them matched.
+	 * If the match can be made right away, both listeners are called before this method returns.
+	 * @param player Player joining.
+	 * @param listener Called back once the player is matched, with the coin they were assigned.
+	 * @return Ticket of the player, to leave the queue with.
+	 */
+	public Ticket enqueue(Player player, MatchmakingEngine.MatchListener listener) {
+		Ticket ticket = new Ticket(player, listener);
+		place(ticket);
+		return ticket;
+	}
+
+	/**
+	 * Leave the queue.
+	 * @param ticket Ticket obtained when joining.
+	 * @return True if the player left the queue, false if they had already been matched.
+	 */
+	public boolean cancel(Ticket ticket) {
+		synchronized (this.buckets) {
+			ticket.cancelled = true;
+			if (ticket.inBucket) {
+				remove(ticket);
+				ticket.expiry.cancel(false);
+				return true;
+			}
+		}
+
+		// Handed to the engine, or being handed to it (in which case handToEngine() cancels it).
+		MatchmakingEngine.Ticket engineTicket = ticket.engineTicket;
+		return engineTicket != null && this.engine.cancel(engineTicket);
+	}
+
+	/**
+	 * Stop the timer; players still waiting in their subnet's bucket are not handed to the engine anymore.
+	 */
+	public void close() {
+		this.timer.shutdownNow();
+	}
+
+	/**
+	 * Getter function for the number of matches made so far.
+	 * @return Number of matches.
+	 */
+	public long getMatchCount() {
+		return this.localMatches.get() + this.engine.getMatchCount();
+	}
+
+	/**
+	 * Getter function for the number of matches made between players in the same subnet, whether they found each
+	 * other in their bucket or by chance in the engine.
+	 * @return Number of matches.
+	 */
+	public long getSameSubnetMatchCount() {
+		return this.sameSubnetMatches.get();
+	}
+
+	/**
+	 * Fraction of the matches made between players in the same subnet, i.e. of the games that get the direct
+	 * socket connection (unless the players use a game server).
+	 * @return Fraction between 0 and 1 (0 if no match was made yet).
+	 */
+	public double getSameSubnetFraction() {
+		long matches = getMatchCount();
+		return matches == 0 ? 0 : (double) getSameSubnetMatchCount() / matches;
+	}
+
+	/**
+	 * Count the players still waiting. Linear time: meant for monitoring and tests.
+	 * @return Number of players waiting, in a bucket or in the engine.
+	 */
+	public int getWaitingCount() {
+		int count = this.engine.getWaitingCount(0) + this.engine.getWaitingCount(1);
+		synchronized (this.buckets) {
+			for (ArrayDeque<Ticket> bucket : this.buckets.values())
+				count += bucket.size();
+		}
+		return count;
+	}
+
+	/**
+	 * Helper function to pair a player who just joined, or have them wait.
+	 * @param ticket Ticket of the player, in no bucket nor in the engine.
+	 */
+	private void place(Ticket ticket) {
+		Player player = ticket.player;
+
+		Ticket local;
+		while ((local = takeLocal(player, null)) != null)
+			if (completeLocal(local, ticket))
+				return;
+
+		MatchmakingEngine.Ticket matched = this.engine.tryMatch(withPreferredCoin(player), countingListener(ticket.listener));
+		if (matched != null) {
+			ticket.engineTicket = matched;
+			return;
+		}
+
+		if (this.window <= 0) {
+			handToEngine(ticket);
+			return;
+		}
+
+		// Someone from the subnet may have come in since the first look: check again, and wait if still nobody.
+		local = takeLocal(player, ticket);
+		if (local != null && !completeLocal(local, ticket))
+			place(ticket);
+	}
+
+	/**
+	 * Helper function to take the first player waiting in the subnet of another out of their bucket.
+	 * @param player Player looking for an opponent.
+	 * @param ticket Ticket of the player, to put in their bucket if nobody is found there (null not to).
+	 * @return Ticket of the opponent found, or null if there is none.
+	 */
+	private Ticket takeLocal(Player player, Ticket ticket) {
+		Long key = player.getSubnetKey();
+		synchronized (this.buckets) {
+			ArrayDeque<Ticket> bucket = this.buckets.get(key);
+			if (bucket != null) {
+				for (Iterator<Ticket> iterator = bucket.iterator(); iterator.hasNext();) {
+					Ticket waiting = iterator.next();
+					if (waiting.player.inSameSubnet(player)) {
+						iterator.remove();
+						if (bucket.isEmpty())
+							this.buckets.remove(key);
+						waiting.inBucket = false;
+						waiting.expiry.cancel(false);
+						return waiting;
+					}
+				}
+			}
+
+			if (ticket != null) {
+				if (bucket == null) {
+					bucket = new ArrayDeque<Ticket>();
+					this.buckets.put(key, bucket);
+				}
+				bucket.add(ticket);
+				ticket.inBucket = true;
+				ticket.expiry = this.timer.schedule(() -> expire(ticket), this.window, TimeUnit.MILLISECONDS);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Helper function to take a ticket out of its bucket. Must hold the lock on the buckets.
+	 * @param ticket Ticket in a bucket.
+	 */
+	private void remove(Ticket ticket) {
+		Long key = ticket.player.getSubnetKey();
+		ArrayDeque<Ticket> bucket = this.buckets.get(key);
+		bucket.remove(ticket);
+		if (bucket.isEmpty())
+			this.buckets.remove(key);
+		ticket.inBucket = false;
+	}
+
+	/**
+	 * The player waited out their window: hand them to the engine, unless they were matched or left in the meantime.
+	 * @param ticket Ticket of the player.
+	 */
+	private void expire(Ticket ticket) {
+		synchronized (this.buckets) {
+			if (!ticket.inBucket)
+				return;
+			remove(ticket);
+		}
+		handToEngine(ticket);
+	}
+
+	/**
+	 * Helper function to queue a player up in the engine, where they are paired with whoever comes first.
+	 * @param ticket Ticket of the player, in no bucket.
+	 */
+	private void handToEngine(Ticket ticket) {
+		MatchmakingEngine.Ticket engineTicket = this.engine.enqueue(withPreferredCoin(ticket.player), countingListener(ticket.listener));
+		ticket.engineTicket = engineTicket;
+		// The player may have left between being taken out of the bucket and getting their engine ticket.
+		if (ticket.cancelled)
+			this.engine.cancel(engineTicket);
+	}
+
+	/**
+	 * Helper function to pair two players of the same subnet: the one who was waiting keeps their coin.
+	 * @param waiting Ticket of the player who was waiting, out of their bucket.
+	 * @param joining Ticket of the player who just joined.
+	 * @return False if the player who was waiting is gone, in which case the one who joined was not called back.
+	 */
+	private boolean completeLocal(Ticket waiting, Ticket joining) {
+		Player self = joining.player.withCoin(1 - waiting.player.getCoin());
+		if (waiting.listener != null && !waiting.listener.matched(waiting.player, self))
+			return false;
+
+		this.localMatches.incrementAndGet();
+		this.sameSubnetMatches.incrementAndGet();
+		if (joining.listener != null)
+			joining.listener.matched(self, waiting.player);
+		return true;
+	}
+
+	/**
+	 * @return The player with the coin that gets them matched soonest in the engine.
+	 */
+	private Player withPreferredCoin(Player player) {
+		int coin = this.engine.preferredCoin(player.getCoin());
+		return coin == player.getCoin() ? player : player.withCoin(coin);
+	}
+
+	/**
+	 * Wrap the listener of a player going through the engine so that same-subnet matches get counted, once per
+	 * match, on the coin 0 side (when that player could be told).
+	 * @param listener Listener of the player (may be null).
+	 * @return Listener to give the engine.
+	 */
+	private MatchmakingEngine.MatchListener countingListener(MatchmakingEngine.MatchListener listener) {
+		return (self, opponent) -> {
+			boolean told = listener == null || listener.matched(self, opponent);
+			if (told && self.getCoin() == 0 && self.inSameSubnet(opponent))
+				this.sameSubnetMatches.incrementAndGet();
+			return told;
+		};
+	}
+}
@@ -0,0 +1,96 @@
+package backend;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Client side of the MatchmakingServer protocol: joins the queue and blocks until the server pushes a match.
+ */
+public class MatchmakingClient {
+	private final String host;
+	private final int port;
+	private volatile Socket socket;
+	private volatile boolean cancelled;
+
+	/**
+	 * Constructor: sets up fields.
+	 * @param host Hostname of the matchmaking server.
+	 * @param port Port number of the matchmaking server.
+	 */
+	public MatchmakingClient(String host, int port) {
+		this.host = host;
+		this.port = port;
+	}
+
+	/**
+	 * Constructor from an address in the host:port form.
+	 * @param address Address of the matchmaking server as host:port.
+	 */
+	public MatchmakingClient(String address) {
+		int separator = address.lastIndexOf(':');
+		if (separator < 0)
+			throw new RuntimeException("Error, the matchmaker address: '" + address + "' has an unexpected format");
+
+		this.host = address.substring(0, separator);
+		this.port = Integer.parseInt(address.substring(separator + 1));
+	}
+
+	/**
+	 * Join the queue and wait for an opponent.
+	 * @param me Player joining; the coin they end up with is decided by the server.
+	 * @return The player with their assigned coin (index 0) and their opponent (index 1), or null if the wait was cancelled.
+	 */
+	public Player[] awaitMatch(Player me) {
+		try {
+			this.socket = new Socket(this.host, this.port);
+			if (this.cancelled)
+				return null;
+
+			OutputStream out = this.socket.getOutputStream();
+			out.write((MatchmakingServer.JOIN + " " + me + "\n").getBytes(StandardCharsets.UTF_8));
+			out.flush();
+
+			BufferedReader in = new BufferedReader(new InputStreamReader(this.socket.getInputStream(), StandardCharsets.UTF_8));
+			String line = in.readLine();
+
+			if (line == null || !line.startsWith(MatchmakingServer.MATCH + " "))
+				throw new IOException("Matchmaker hung up without a match.");
+
+			String[] parts = line.split(" ", 3);
+			return new Player[] {me.withCoin(Integer.parseInt(parts[1])), new Player(parts[2])};
+		} catch (IOException e) {
+			// Closing the socket is how a wait is cancelled.
+			if (this.cancelled)
+				return null;
+			throw new RuntimeException(e);
+		} finally {
+			close();
+		}
+	}
+
+	/**
+	 * Leave the queue; a pending awaitMatch() returns null.
+	 */
+	public void cancel() {
+		this.cancelled = true;
+		close();
+	}
+
+	/**
+	 * Hang up on the matchmaking server.
+	 */
+	private void close() {
+		Socket socket = this.socket;
+		if (socket != null) {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// oh well...
+			}
+		}
+	}
+}
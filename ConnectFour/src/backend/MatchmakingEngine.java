@@ -0,0 +1,264 @@
+package backend;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process, lock-free matchmaking engine. Waiting players sit in one of two lock-free queues keyed by their
+ * coin value, and a player is paired with the head of the queue of the complementary coin, so that both
+ * enqueuing and pairing are O(1) and safe to call from any number of threads.
+ *
+ * A ticket is only ever matched through a compare-and-set of its state, which is what guarantees that nobody is
+ * matched twice. Pairing two tickets that are both already queued needs two of those: the coin 0 ticket is
+ * always claimed first, then the coin 1 ticket is matched, and the claim is released if that fails. Since claims
+ * are only ever taken in that order and never held while waiting, there is no deadlock, and a thread running into
+ * a claimed ticket simply puts it back for later.
+ *
+ * The player who was waiting is called back first. If they cannot be told (they are gone), the other player is not
+ * called back but paired with the next player waiting instead.
+ */
+public class MatchmakingEngine {
+	private static final int WAITING = 0;
+	private static final int CLAIMED = 1;
+	private static final int MATCHED = 2;
+	private static final int CANCELLED = 3;
+
+	/**
+	 * Callback invoked when a player is matched, from whichever thread made the match.
+	 */
+	public interface MatchListener {
+		/**
+		 * Signal that a match has been made.
+		 * @param self Player that was waiting.
+		 * @param opponent Their opponent (with the complementary coin).
+		 * @return Whether the player could be told. If the player who was waiting cannot, the match is called off
+		 * and their opponent paired with somebody else; the answer of the other player is not looked at.
+		 */
+		public boolean matched(Player self, Player opponent);
+	}
+
+	/**
+	 * A player's place in the queue; can be used to leave it.
+	 */
+	public static class Ticket {
+		private final Player player;
+		private final MatchListener listener;
+		private final AtomicInteger state;
+		private volatile Player opponent;
+
+		private Ticket(Player player, MatchListener listener) {
+			this.player = player;
+			this.listener = listener;
+			this.state = new AtomicInteger(WAITING);
+		}
+
+		/**
+		 * Getter function for the player holding the ticket.
+		 * @return Player.
+		 */
+		public Player getPlayer() {
+			return this.player;
+		}
+
+		/**
+		 * Getter function for the opponent the player was matched with.
+		 * @return Opponent, or null if not matched (yet).
+		 */
+		public Player getOpponent() {
+			return this.opponent;
+		}
+	}
+
+	private final List<ConcurrentLinkedQueue<Ticket>> waiting;
+	private final AtomicLong matches;
+
+	/**
+	 * Constructor: sets up empty queues.
+	 */
+	public MatchmakingEngine() {
+		this.waiting = Arrays.asList(new ConcurrentLinkedQueue<Ticket>(), new ConcurrentLinkedQueue<Ticket>());
+		this.matches = new AtomicLong();
+	}
+
+	/**
+	 * Get in line. If a player with the complementary coin is waiting, the match is made right away (and both
+	 * listeners are called before this method returns); otherwise the player waits for one to show up.
+	 * @param player Player joining, with their coin value (0 or 1).
+	 * @param listener Called back once the player is matched.
+	 * @return Ticket of the player, to leave the queue with.
+	 */
+	public Ticket enqueue(Player player, MatchListener listener) {
+		int coin = player.getCoin();
+		if (coin != 0 && coin != 1)
+			throw new RuntimeException("Error, the player's coin cannot be: " + coin);
+
+		Ticket ticket = new Ticket(player, listener);
+
+		// Nobody else knows about the ticket yet, so matching it only takes one compare-and-set (on the opponent).
+		if (pairWithWaiting(ticket))
+			return ticket;
+
+		this.waiting.get(coin).offer(ticket);
+
+		// Someone with the complementary coin may have been queued at the same time without seeing this ticket:
+		// pair up whatever can be paired now rather than leave both waiting.
+		pairWaiting();
+		return ticket;
+	}
+
+	/**
+	 * Pair a player with a waiting player if there is one, without queuing them up otherwise.
+	 * @param player Player joining, with their coin value (0 or 1).
+	 * @param listener Called back if the player is matched (before this method returns).
+	 * @return Ticket of the player if they were matched, null if nobody with the complementary coin was waiting.
+	 */
+	public Ticket tryMatch(Player player, MatchListener listener) {
+		int coin = player.getCoin();
+		if (coin != 0 && coin != 1)
+			throw new RuntimeException("Error, the player's coin cannot be: " + coin);
+
+		Ticket ticket = new Ticket(player, listener);
+		return pairWithWaiting(ticket) ? ticket : null;
+	}
+
+	/**
+	 * Coin value a player should take to be matched as soon as possible, for callers that are free to pick it.
+	 * @param coin Coin value the player would have otherwise.
+	 * @return Complement of the coin of the players waiting, or the given coin if nobody (or everybody) is waiting.
+	 */
+	public int preferredCoin(int coin) {
+		if (this.waiting.get(1 - coin).peek() == null && this.waiting.get(coin).peek() != null)
+			return 1 - coin;
+		return coin;
+	}
+
+	/**
+	 * Leave the queue.
+	 * @param ticket Ticket obtained when joining.
+	 * @return True if the player left the queue, false if they had already been matched.
+	 */
+	public boolean cancel(Ticket ticket) {
+		while (true) {
+			int state = ticket.state.get();
+			if (state == MATCHED || state == CANCELLED)
+				return false;
+			// A claim only lasts for one compare-and-set of another thread: wait it out.
+			if (state == WAITING && ticket.state.compareAndSet(WAITING, CANCELLED))
+				return true;
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * Getter function for the number of matches made so far.
+	 * @return Number of matches.
+	 */
+	public long getMatchCount() {
+		return this.matches.get();
+	}
+
+	/**
+	 * Count the players still waiting for a given coin value. Linear time: meant for monitoring and tests.
+	 * @param coin Coin value (0 or 1).
+	 * @return Number of players waiting with that coin.
+	 */
+	public int getWaitingCount(int coin) {
+		int count = 0;
+		for (Ticket ticket : this.waiting.get(coin))
+			if (ticket.state.get() == WAITING)
+				count++;
+		return count;
+	}
+
+	/**
+	 * Match a ticket nobody else knows about with the first live ticket of the complementary queue.
+	 * @param ticket Unpublished ticket.
+	 * @return True if the ticket was matched.
+	 */
+	private boolean pairWithWaiting(Ticket ticket) {
+		ConcurrentLinkedQueue<Ticket> opposite = this.waiting.get(1 - ticket.player.getCoin());
+		Ticket firstPutBack = null;
+
+		Ticket candidate;
+		while ((candidate = opposite.poll()) != null) {
+			if (candidate.state.compareAndSet(WAITING, MATCHED)) {
+				ticket.state.set(MATCHED);
+				if (complete(candidate, ticket))
+					return true;
+				// The waiting player is gone: try the next one.
+				ticket.state.set(WAITING);
+				continue;
+			}
+
+			// Claimed by a thread pairing it up right now: put it back, unless it has already come around once.
+			if (candidate.state.get() == CLAIMED) {
+				opposite.offer(candidate);
+				if (candidate == firstPutBack)
+					return false;
+				if (firstPutBack == null)
+					firstPutBack = candidate;
+			}
+			// Otherwise the ticket was matched or cancelled already: drop it.
+		}
+		return false;
+	}
+
+	/**
+	 * Pair queued tickets with each other for as long as both queues have some.
+	 */
+	private void pairWaiting() {
+		ConcurrentLinkedQueue<Ticket> zeros = this.waiting.get(0);
+		ConcurrentLinkedQueue<Ticket> ones = this.waiting.get(1);
+
+		while (zeros.peek() != null && ones.peek() != null) {
+			Ticket zero = zeros.poll();
+			if (zero == null)
+				return;
+
+			if (!zero.state.compareAndSet(WAITING, CLAIMED)) {
+				if (zero.state.get() == CLAIMED)
+					zeros.offer(zero);
+				continue;
+			}
+
+			Ticket one;
+			while ((one = ones.poll()) != null && !one.state.compareAndSet(WAITING, MATCHED));
+			// Coin 1 tickets are never claimed, so anything that failed the compare-and-set was dead and is dropped.
+
+			if (one == null) {
+				// Nobody left on the other side after all: release the claim and check again.
+				zero.state.set(WAITING);
+				zeros.offer(zero);
+				continue;
+			}
+
+			zero.state.set(MATCHED);
+			if (!complete(zero, one)) {
+				// The coin 0 player is gone: the coin 1 player gets back in line (at the end, for lack of better).
+				one.state.set(WAITING);
+				ones.offer(one);
+			}
+		}
+	}
+
+	/**
+	 * Call both players back and record the match, unless the first player cannot be told.
+	 * @param first Ticket that was waiting.
+	 * @param second Other ticket.
+	 * @return False if the first player is gone, in which case the second one was not called back.
+	 */
+	private boolean complete(Ticket first, Ticket second) {
+		if (first.listener != null && !first.listener.matched(first.player, second.player))
+			return false;
+
+		first.opponent = second.player;
+		second.opponent = first.player;
+		this.matches.incrementAndGet();
+		if (second.listener != null)
+			second.listener.matched(second.player, first.player);
+		return true;
+	}
+}
@@ -0,0 +1,240 @@
+package backend;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Dedicated matchmaking service replacing the PlayerPool.txt text file. Waiting players are held in a
+ * LocalityMatchmaker, which pairs players of the same subnet first, so that their game gets the direct socket
+ * connection, and anybody who has waited out the wait window with whoever comes next. Both players are pushed the
+ * match over their connection; if the player who was waiting turns out to be gone, the other one is paired with the
+ * next player waiting instead.
+ *
+ * Protocol (one line per message, UTF-8):
+ * client: JOIN hostname/mask,coin,fileName      (i.e. Player.toString())
+ * server: MATCH coin hostname/mask,coin,fileName (the client's coin, then its opponent)
+ * The client may also send LEAVE, or simply close the connection, to get out of the queue.
+ */
+public class MatchmakingServer {
+	protected static final int DEFAULT_PORT = 9870;
+	protected static final String JOIN = "JOIN";
+	protected static final String MATCH = "MATCH";
+	protected static final String LEAVE = "LEAVE";
+
+	private final ServerSocket serverSocket;
+	private final ExecutorService executor;
+	private final LocalityMatchmaker matchmaker;
+	private final Set<Connection> connections;
+	private volatile boolean isOpen;
+
+	/**
+	 * Constructor: binds the server without starting it, with the default wait window.
+	 * @param address Address to bind to (null for all interfaces).
+	 * @param port Port number to listen on (0 to pick any free port).
+	 */
+	public MatchmakingServer(InetAddress address, int port) {
+		this(address, port, LocalityMatchmaker.DEFAULT_WINDOW_MS);
+	}
+
+	/**
+	 * Constructor: binds the server without starting it.
+	 * @param address Address to bind to (null for all interfaces).
+	 * @param port Port number to listen on (0 to pick any free port).
+	 * @param window Longest time a player waits for an opponent in their subnet, in milliseconds.
+	 */
+	public MatchmakingServer(InetAddress address, int port, long window) {
+		try {
+			this.serverSocket = new ServerSocket();
+			this.serverSocket.bind(new InetSocketAddress(address, port), 1024);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+
+		this.executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "MatchmakingServer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.matchmaker = new LocalityMatchmaker(window);
+		this.connections = ConcurrentHashMap.newKeySet();
+	}
+
+	/**
+	 * Start accepting players.
+	 */
+	public void start() {
+		this.isOpen = true;
+		this.executor.execute(() -> {
+			try {
+				while (this.isOpen) {
+					Connection connection = new Connection(this.serverSocket.accept());
+					this.connections.add(connection);
+					this.executor.execute(connection);
+				}
+			} catch (IOException e) {
+				// Server socket closed: stop accepting.
+			}
+		});
+	}
+
+	/**
+	 * Stop the server, dropping every waiting player.
+	 */
+	public void stop() {
+		this.isOpen = false;
+		try {
+			this.serverSocket.close();
+		} catch (IOException e) {
+			// oh well...
+		}
+
+		for (Connection connection : this.connections)
+			connection.close();
+		this.executor.shutdownNow();
+		this.matchmaker.close();
+	}
+
+	/**
+	 * Getter function for the port number the server is bound to.
+	 * @return Port number.
+	 */
+	public int getPort() {
+		return this.serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Getter function for the number of players currently waiting for an opponent.
+	 * @return Number of waiting players.
+	 */
+	public int getWaitingCount() {
+		return this.matchmaker.getWaitingCount();
+	}
+
+	/**
+	 * Getter function for the number of matches made since the server started.
+	 * @return Number of matches.
+	 */
+	public long getMatchCount() {
+		return this.matchmaker.getMatchCount();
+	}
+
+	/**
+	 * Fraction of the matches made between players in the same subnet, i.e. of the games that get the direct
+	 * socket connection.
+	 * @return Fraction between 0 and 1.
+	 */
+	public double getSameSubnetFraction() {
+		return this.matchmaker.getSameSubnetFraction();
+	}
+
+	/**
+	 * Pair a player with a waiting player, or queue them up if nobody suitable is waiting. Waiting players keep their
+	 * coin and the newcomer takes whichever coin gets them matched.
+	 * @param connection Connection of the player who just joined.
+	 */
+	private void join(Connection connection) {
+		connection.ticket = this.matchmaker.enqueue(connection.player, connection::sendMatch);
+	}
+
+	/**
+	 * Take a player out of the queue (they left or their connection dropped).
+	 * @param connection Connection of the player.
+	 */
+	private void leave(Connection connection) {
+		if (connection.ticket != null)
+			this.matchmaker.cancel(connection.ticket);
+		this.connections.remove(connection);
+	}
+
+	/**
+	 * Connection of one player: reads their requests until they are matched or leave.
+	 */
+	private class Connection implements Runnable {
+		private final Socket socket;
+		private volatile Player player;
+		private volatile LocalityMatchmaker.Ticket ticket;
+
+		private Connection(Socket socket) {
+			this.socket = socket;
+		}
+
+		@Override
+		public void run() {
+			try {
+				BufferedReader in = new BufferedReader(new InputStreamReader(this.socket.getInputStream(), StandardCharsets.UTF_8));
+				String line;
+				while ((line = in.readLine()) != null) {
+					if (line.startsWith(JOIN + " ") && this.player == null) {
+						this.player = new Player(line.substring(JOIN.length() + 1).trim());
+						join(this);
+					} else if (line.equals(LEAVE)) {
+						break;
+					}
+				}
+			} catch (Exception e) {
+				// Malformed request or dropped connection: same as leaving.
+			} finally {
+				leave(this);
+				close();
+			}
+		}
+
+		/**
+		 * Push the match to the player and hang up.
+		 * @param self The player, with the coin they were assigned.
+		 * @param opponent Their opponent.
+		 * @return Whether the match could be sent.
+		 */
+		private boolean sendMatch(Player self, Player opponent) {
+			try {
+				OutputStream out = this.socket.getOutputStream();
+				out.write((MATCH + " " + self.getCoin() + " " + opponent + "\n").getBytes(StandardCharsets.UTF_8));
+				out.flush();
+				return true;
+			} catch (IOException e) {
+				return false;
+			} finally {
+				close();
+			}
+		}
+
+		private void close() {
+			try {
+				this.socket.close();
+			} catch (IOException e) {
+				// oh well...
+			}
+		}
+	}
+
+	/**
+	 * Run the matchmaking server on its own.
+	 * @param args Optional port number (defaults to 9870) and wait window in milliseconds (defaults to 1000).
+	 */
+	public static void main(String[] args) {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		long window = args.length > 1 ? Long.parseLong(args[1]) : LocalityMatchmaker.DEFAULT_WINDOW_MS;
+
+		MatchmakingServer server = new MatchmakingServer(null, port, window);
+		server.start();
+		System.out.println("Matchmaking on port " + server.getPort());
+
+		// The worker threads are daemons: keep the JVM alive.
+		try {
+			Thread.currentThread().join();
+		} catch (InterruptedException e) {
+			server.stop();
+		}
+	}
+}
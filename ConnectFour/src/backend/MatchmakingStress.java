@@ -0,0 +1,108 @@
+package backend;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stress harness for the MatchmakingEngine: many threads enqueue simulated players (with random coins, a few of
+ * them giving up while waiting) and every match is checked afterwards. Prints the throughput in pairs per second
+ * and exits with a non-zero status if anybody was matched twice, matched with the same coin, or left waiting while
+ * a complementary player was waiting too.
+ */
+public class MatchmakingStress {
+	protected static final int DEFAULT_PLAYERS = 100000;
+	protected static final int DEFAULT_THREADS = 16;
+	protected static final int CANCEL_PERCENT = 5;
+
+	/**
+	 * Run the stress test.
+	 * @param args Optional number of players (defaults to 100000) and number of threads (defaults to 16).
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		int players = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PLAYERS;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_THREADS;
+
+		MatchmakingEngine engine = new MatchmakingEngine();
+		ConcurrentMap<String, String> opponents = new ConcurrentHashMap<String, String>();
+		AtomicInteger doubleMatches = new AtomicInteger();
+		AtomicInteger sameCoinMatches = new AtomicInteger();
+		AtomicLong cancelled = new AtomicLong();
+
+		MatchmakingEngine.MatchListener listener = (self, opponent) -> {
+			if (opponents.putIfAbsent(self.getFileName(), opponent.getFileName()) != null)
+				doubleMatches.incrementAndGet();
+			if (self.getCoin() == opponent.getCoin())
+				sameCoinMatches.incrementAndGet();
+			return true;
+		};
+
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(threads);
+
+		for (int t = 0; t < threads; t++) {
+			final int first = t * players / threads;
+			final int last = (t + 1) * players / threads;
+
+			new Thread() {
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+
+					try {
+						enqueue(first, last);
+					} finally {
+						done.countDown();
+					}
+				}
+
+				private void enqueue(int first, int last) {
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					for (int i = first; i < last; i++) {
+						// A distinct made-up address per player: hostnames are what identify them in the results.
+						String hostname = "10." + (i >> 16 & 0xFF) + "." + (i >> 8 & 0xFF) + "." + (i & 0xFF);
+						Player player = new Player(hostname + "/24," + random.nextInt(2) + ",player" + i + ".txt");
+
+						MatchmakingEngine.Ticket ticket = engine.enqueue(player, listener);
+						if (random.nextInt(100) < CANCEL_PERCENT && engine.cancel(ticket))
+							cancelled.incrementAndGet();
+					}
+				}
+			}.start();
+		}
+
+		long startTime = System.nanoTime();
+		start.countDown();
+		done.await();
+		long elapsed = System.nanoTime() - startTime;
+
+		long pairs = engine.getMatchCount();
+		int waitingZeros = engine.getWaitingCount(0);
+		int waitingOnes = engine.getWaitingCount(1);
+
+		// Both sides of every match must have been told about the other one, and nobody else.
+		int asymmetric = 0;
+		for (String player : opponents.keySet())
+			if (!player.equals(opponents.get(opponents.get(player))))
+				asymmetric++;
+
+		long accounted = 2 * pairs + cancelled.get() + waitingZeros + waitingOnes;
+
+		System.out.println(players + " players, " + threads + " threads");
+		System.out.println(pairs + " pairs in " + elapsed / 1000000 + " ms: " + (long) (pairs / (elapsed / 1e9)) + " pairs/s");
+		System.out.println(cancelled.get() + " cancelled, " + waitingZeros + " + " + waitingOnes + " still waiting");
+		System.out.println(doubleMatches.get() + " matched twice, " + sameCoinMatches.get() + " matched with the same coin, "
+				+ asymmetric + " asymmetric, " + (players - accounted) + " unaccounted for");
+
+		boolean failed = doubleMatches.get() > 0 || sameCoinMatches.get() > 0 || asymmetric > 0 || accounted != players
+				|| opponents.size() != 2 * pairs || (waitingZeros > 0 && waitingOnes > 0);
+		System.out.println(failed ? "FAILED" : "OK");
+		System.exit(failed ? 1 : 0);
+	}
+}
@@ -1,42 +1,57 @@
 package backend;
 
 import java.net.Inet4Address;
+import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InterfaceAddress;
 import java.net.NetworkInterface;
 import java.net.SocketException;
 import java.net.UnknownHostException;
-import java.util.List;
+import java.util.Collections;
 
 /**
- * Wrapper to get user's IPv4 address.
+ * Wrapper to get user's IP address.
  */
 public class MyIP {
 	/**
-	 * Returns the IPv4 address of the current user with the mask size (prefix length) in the form a.b.c.d/m
-	 * @return The IPv4 address as described above as a string
+	 * Returns the IP address of the current user with the mask size (prefix length) in the form a.b.c.d/m (or, on a
+	 * network without IPv4, an IPv6 address followed by /m).
+	 *
+	 * The address comes from the interface the host name resolves to. When that is the loopback interface (as with a
+	 * host name only listed in /etc/hosts), the other interfaces that are up are searched instead. IPv4 addresses are
+	 * preferred over IPv6 ones, and link-local IPv6 addresses are left out, since they do not route past the link.
+	 * @return The IP address as described above as a string
 	 */
 	public static String getMyIP() {
 		try {
-			InetAddress localHost = Inet4Address.getLocalHost();
-			NetworkInterface networkInterface = NetworkInterface.getByInetAddress(localHost);
-			
-			List<InterfaceAddress> interfaceAddresses = networkInterface.getInterfaceAddresses();
 			InterfaceAddress interfaceAddress = null;
+			
+			InetAddress localHost = InetAddress.getLocalHost();
+			if (!localHost.isLoopbackAddress()) {
+				interfaceAddress = findAddress(NetworkInterface.getByInetAddress(localHost));
+			}
+			
+			if (interfaceAddress == null) {
+				for (NetworkInterface networkInterface : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+					if (!networkInterface.isUp() || networkInterface.isLoopback())
+						continue;
+					
+					InterfaceAddress candidate = findAddress(networkInterface);
+					if (candidate != null && (interfaceAddress == null || candidate.getAddress() instanceof Inet4Address
+							&& !(interfaceAddress.getAddress() instanceof Inet4Address))) {
+						interfaceAddress = candidate;
+					}
+				}
+			}
 
-			// Find the IPv4 address among the interfaceAddresses using the fact that IPv6 does not have a broadcast address
-            for (InterfaceAddress ia : interfaceAddresses) {
-                if (ia.getBroadcast() != null) {
-                    interfaceAddress = ia;
-                    break;
-                }
-            }
-
-            if (interfaceAddress == null) {
-                throw new RuntimeException("Error, no IPv4 address found.");
-            }
+			if (interfaceAddress == null) {
+				throw new RuntimeException("Error, no IP address found.");
+			}
 			
 			String ip = interfaceAddress.getAddress().getHostAddress();
+			int zone = ip.indexOf('%');
+			if (zone >= 0)
+				ip = ip.substring(0, zone);
 			short mask = interfaceAddress.getNetworkPrefixLength();
 			return ip + "/" + mask;
 		} catch (UnknownHostException e) {
@@ -45,4 +60,25 @@ public class MyIP {
 			throw new RuntimeException(e);
 		}
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * Helper function to pick the address of an interface.
+	 * @param networkInterface Interface (may be null)
+	 * @return Its IPv4 address if it has one, else its first routable IPv6 address, else null
+	 */
+	private static InterfaceAddress findAddress(NetworkInterface networkInterface) {
+		if (networkInterface == null)
+			return null;
+		
+		InterfaceAddress ipv6 = null;
+		for (InterfaceAddress ia : networkInterface.getInterfaceAddresses()) {
+			InetAddress address = ia.getAddress();
+			if (address instanceof Inet4Address)
+				return ia;
+			if (ipv6 == null && address instanceof Inet6Address && !address.isLinkLocalAddress())
+				ipv6 = ia;
+		}
+		
+		return ipv6;
+	}
+}
@@ -0,0 +1,171 @@
+package backend;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import frontend.MiddleWare;
+
+/**
+ * Event-driven counterpart of SocketMessageListener: accepts the opponent's connection on a port and passes every
+ * frame on to the front-end as soon as the NioReactor reports it readable. Same wire format (see FrameCodec). The
+ * front-end is called in order from the BackgroundExecutor, not from the reactor (see SerialExecutor).
+ */
+public class NioMessageListener implements NioReactor.EventHandler {
+	protected static final int READ_BUFFER_SIZE = 1024; // Grows up to the largest frame if need be
+
+	private final NioReactor reactor;
+	private final ServerSocketChannel serverChannel;
+	private final FrameReceiver receiver; // Only touched by the callbacks
+	private final SerialExecutor callbacks;
+	private boolean isRejected; // The receiver turned a frame down; only touched by the callbacks
+	private ByteBuffer in; // Bytes of incomplete frames, in write mode
+	private volatile MiddleWare mw;
+	private SocketChannel channel; // Only touched by the reactor from here on
+	private boolean isOpen;
+
+	/**
+	 * Constructor: binds the listening port right away and starts accepting on the reactor.
+	 * @param port Port number at which the socket will reside.
+	 * @param mw Means of communicating the information with the front-end.
+	 */
+	public NioMessageListener(int port, MiddleWare mw) {
+		this.mw = mw;
+		this.reactor = NioReactor.getInstance();
+		this.in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+		this.receiver = new FrameReceiver();
+		this.callbacks = new SerialExecutor();
+		this.isOpen = true;
+
+		try {
+			this.serverChannel = ServerSocketChannel.open();
+			this.serverChannel.bind(new InetSocketAddress(port));
+			this.serverChannel.configureBlocking(false);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+
+		this.reactor.execute(this, () -> {
+			try {
+				if (this.isOpen)
+					this.reactor.register(this.serverChannel, SelectionKey.OP_ACCEPT, this);
+			} catch (IOException e) {
+				closeNow();
+			}
+		});
+	}
+
+	/**
+	 * In case the view changes and the same message listener is needed, use this method.
+	 * @param mw New means of interfacing with the front-end.
+	 */
+	public void setMiddleWare(MiddleWare mw) {
+		this.mw = mw;
+	}
+
+	@Override
+	public void ready(SelectionKey key) {
+		try {
+			if (key.isAcceptable())
+				accept();
+			else if (key.isReadable())
+				read();
+		} catch (IOException e) {
+			// do nothing - i.e. close the listener.
+			closeNow();
+		}
+	}
+
+	@Override
+	public void failed(RuntimeException cause) {
+		closeNow();
+		this.callbacks.execute(() -> this.mw.transferFail());
+	}
+
+	/**
+	 * Accept the opponent's connection. There is only ever one: stop listening for more and free the port.
+	 */
+	private void accept() throws IOException {
+		SocketChannel channel = this.serverChannel.accept();
+		if (channel == null)
+			return;
+
+		this.serverChannel.close();
+		this.channel = channel;
+		this.channel.configureBlocking(false);
+		this.channel.socket().setTcpNoDelay(true);
+		this.reactor.register(this.channel, SelectionKey.OP_READ, this);
+	}
+
+	/**
+	 * Pass every whole frame the opponent sent on to the front-end, in order. Partial frames stay in the buffer
+	 * until the rest arrives.
+	 */
+	private void read() throws IOException {
+		if (!this.in.hasRemaining()) {
+			if (this.in.capacity() >= FrameCodec.LENGTH_FIELD_SIZE + FrameCodec.MAX_FRAME_LENGTH)
+				throw new IOException("Frame too long.");
+			ByteBuffer bigger = ByteBuffer.allocate(this.in.capacity() * 2);
+			this.in.flip();
+			bigger.put(this.in);
+			this.in = bigger;
+		}
+
+		int read = this.channel.read(this.in);
+
+		// -1 indicates transmitting end of the socket has been closed.
+		if (read == -1) {
+			closeNow();
+			return;
+		}
+
+		this.in.flip();
+		try {
+			Frame frame;
+			while ((frame = FrameCodec.decode(this.in)) != null)
+				deliver(frame);
+		} finally {
+			this.in.compact();
+		}
+	}
+
+	/**
+	 * Hand a frame to the front-end, after the ones before it. If the receiver turns it down, close the listener and
+	 * drop the frames after it.
+	 * @param frame Frame received.
+	 */
+	private void deliver(Frame frame) {
+		this.callbacks.execute(() -> {
+			if (this.isRejected)
+				return;
+			if (!this.receiver.receive(frame, this.mw)) {
+				this.isRejected = true;
+				close();
+			}
+		});
+	}
+
+	/**
+	 * Close the listening socket to free the port.
+	 */
+	public void close() {
+		this.reactor.execute(this, this::closeNow);
+	}
+
+	/**
+	 * Close the channels. Must be called from the reactor.
+	 */
+	private void closeNow() {
+		this.isOpen = false;
+		try {
+			this.serverChannel.close();
+			if (this.channel != null)
+				this.channel.close();
+		} catch (IOException e) {
+			// oh well...
+		}
+	}
+}
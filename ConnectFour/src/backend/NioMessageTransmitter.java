@@ -0,0 +1,207 @@
+package backend;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+import frontend.MiddleWare;
+
+/**
+ * Event-driven counterpart of SocketMessageTransmitter: messages are written to the opponent as soon as they are
+ * sent, and whatever the socket cannot take right away is written by the NioReactor once the socket is writable
+ * again. Same wire format (see FrameCodec). A failure is reported to the front-end from the BackgroundExecutor, not
+ * from the reactor (see SerialExecutor).
+ */
+public class NioMessageTransmitter implements NioReactor.EventHandler {
+	protected static final int WRITE_BUFFER_SIZE = 1024;
+
+	private final NioReactor reactor;
+	private volatile MiddleWare mw;
+	private final SerialExecutor callbacks;
+	private SocketChannel channel;
+	// Everything below is only touched by the reactor.
+	private SelectionKey key;
+	private ByteBuffer out; // Frames not written yet, in write mode
+	private int seq; // Sequence number of the last frame
+	private boolean connected;
+	private boolean closing;
+
+	/**
+	 * Constructor: starts connecting to the opponent. Messages sent in the meantime are written once connected.
+	 * @param hostName Hostname messages will be transmitted to (opponent's IPv4 address).
+	 * @param port Port number on which socket will be opened.
+	 * @param mw Means of communicating the information with the front-end.
+	 */
+	public NioMessageTransmitter(String hostName, int port, MiddleWare mw) {
+		this.mw = mw;
+		this.reactor = NioReactor.getInstance();
+		this.callbacks = new SerialExecutor();
+		this.out = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+
+		try {
+			this.channel = SocketChannel.open();
+			this.channel.configureBlocking(false);
+			this.channel.socket().setTcpNoDelay(true);
+			boolean connected = this.channel.connect(new InetSocketAddress(hostName, port));
+
+			this.reactor.execute(this, () -> {
+				try {
+					this.key = this.reactor.register(this.channel, SelectionKey.OP_CONNECT, this);
+					if (connected)
+						connected();
+				} catch (IOException e) {
+					fail();
+				}
+			});
+		} catch (Exception e) {
+			this.channel = null;
+			mw.transferFail();
+		}
+	}
+
+	/**
+	 * In case the view changes and the same message transmitter is needed, use this method.
+	 * @param mw New means of interfacing with the front-end.
+	 */
+	public void setMiddleWare(MiddleWare mw) {
+		this.mw = mw;
+	}
+
+	/**
+	 * Function to be called when a message is to be sent. It is written right away if the socket can take it.
+	 * @param message Message to be transmitted.
+	 */
+	public void send(int message) {
+		send(new int[] {message});
+	}
+
+	/**
+	 * Send several messages at once: they are written together, in a single write if the socket can take it.
+	 * @param messages Messages to be transmitted, in order.
+	 */
+	public void send(int[] messages) {
+		send(Frame.ofInts(messages));
+	}
+
+	/**
+	 * Send several frames at once: they are written together, in a single write if the socket can take it.
+	 * @param frames Frames to be transmitted, in order.
+	 */
+	public void send(Frame[] frames) {
+		// If there is no socket to write to, error out.
+		if (this.channel == null) {
+			this.mw.transferFail();
+			return;
+		}
+
+		this.reactor.execute(this, () -> {
+			if (this.closing)
+				return;
+
+			int length = 0;
+			for (Frame frame : frames)
+				length += FrameCodec.encodedLength(frame);
+
+			if (this.out.remaining() < length) {
+				ByteBuffer bigger = ByteBuffer.allocate(Math.max(this.out.capacity() * 2, this.out.position() + length));
+				this.out.flip();
+				bigger.put(this.out);
+				this.out = bigger;
+			}
+			for (Frame frame : frames)
+				FrameCodec.encode(frame, ++this.seq, this.out);
+
+			if (this.connected)
+				flush();
+		});
+	}
+
+	@Override
+	public void ready(SelectionKey key) {
+		try {
+			if (key.isConnectable()) {
+				this.channel.finishConnect();
+				connected();
+			} else if (key.isWritable()) {
+				flush();
+			}
+		} catch (IOException e) {
+			fail();
+		}
+	}
+
+	@Override
+	public void failed(RuntimeException cause) {
+		fail();
+	}
+
+	/**
+	 * The connection is established: write whatever was sent in the meantime.
+	 */
+	private void connected() {
+		this.connected = true;
+		this.key.interestOps(0);
+		flush();
+	}
+
+	/**
+	 * Write as much of the pending messages as the socket takes, and ask to be told when it takes more. Once the
+	 * transmitter is closing and everything is written, close the socket.
+	 */
+	private void flush() {
+		try {
+			this.out.flip();
+			this.channel.write(this.out);
+			this.out.compact();
+		} catch (IOException e) {
+			fail();
+			return;
+		}
+
+		boolean pending = this.out.position() > 0;
+		this.key.interestOps(pending ? SelectionKey.OP_WRITE : 0);
+
+		if (!pending && this.closing)
+			closeNow();
+	}
+
+	/**
+	 * Finish writing the pending messages, then close the socket. Returns right away: the reactor does the rest.
+	 */
+	public void close() {
+		if (this.channel == null)
+			return;
+
+		this.reactor.execute(this, () -> {
+			this.closing = true;
+			if (this.connected && this.out.position() == 0)
+				closeNow();
+			// Otherwise the last flush (or the failure to connect) closes it.
+		});
+	}
+
+	/**
+	 * If something goes horribly wrong, drop the pending messages and notify the user.
+	 */
+	private void fail() {
+		this.out.clear();
+		boolean notify = !this.closing;
+		closeNow();
+		if (notify)
+			this.callbacks.execute(() -> this.mw.transferFail());
+	}
+
+	/**
+	 * Close the socket. Must be called from the reactor.
+	 */
+	private void closeNow() {
+		this.closing = true;
+		try {
+			this.channel.close();
+		} catch (IOException e) {
+			// oh well...
+		}
+	}
+}
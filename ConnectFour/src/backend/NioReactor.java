@@ -0,0 +1,233 @@
+package backend;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Singleton selector loop serving every NIO channel of the client: a single background task waits for any of
+ * them to become ready (accept, connect, read or write) and dispatches the event to the channel's handler right
+ * away, so one thread serves any number of concurrent game sessions without sleeping or polling.
+ *
+ * Channels and selection keys are only ever touched from the loop itself: other threads hand it work through
+ * execute(), which wakes the selector up.
+ *
+ * A handler throwing does not take the other sessions down with it: its channel is closed (the key is cancelled
+ * and the handler told through failed(), which closes whatever else it holds and reports to its owner), and the
+ * loop goes on. Tasks run on behalf of a handler fail it the same way; other tasks are reported to the thread's
+ * uncaught exception handler. So is a failure of the selector itself, after which the loop tries again: the reactor
+ * never dies, as nothing could take its channels over. Handlers do not call the front-end themselves, which could
+ * take its time: they hand the calls to the BackgroundExecutor (see SerialExecutor).
+ */
+public class NioReactor implements Runnable {
+	protected static final int SELECT_RETRY_TIME_MS = 100; // Pause after the selector failed, not to spin on it
+
+	private static volatile NioReactor instance;
+
+	private final Selector selector;
+	private final Queue<Runnable> tasks;
+	private volatile Thread thread;
+
+	/**
+	 * Handler of the events of a channel, attached to its selection key. Only called from the reactor.
+	 */
+	public interface EventHandler {
+		/**
+		 * Handle the events a channel is ready for.
+		 * @param key Selection key of the channel, with its ready set.
+		 */
+		public void ready(SelectionKey key);
+
+		/**
+		 * Handling an event, or a task run on behalf of the handler, threw: close the channels of the handler and
+		 * report the failure to whoever owns them. The channel of the event is closed already.
+		 * @param cause What was thrown.
+		 */
+		public void failed(RuntimeException cause);
+	}
+
+	/**
+	 * Private constructor to enforce singleton pattern.
+	 */
+	private NioReactor() {
+		try {
+			this.selector = Selector.open();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		this.tasks = new ConcurrentLinkedQueue<Runnable>();
+	}
+
+	/**
+	 * Following the singleton pattern (lazy evaluation): the selector loop starts with the first use.
+	 * @return Instance of NioReactor.
+	 */
+	public static NioReactor getInstance() {
+		if (instance == null) {
+			synchronized (NioReactor.class) {
+				if (instance == null) {
+					NioReactor reactor = new NioReactor();
+					BackgroundExecutor.getInstance().queue(reactor);
+					instance = reactor;
+				}
+			}
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Run a task on the reactor, after the ones already handed to it.
+	 * @param task Task to run.
+	 */
+	public void execute(Runnable task) {
+		this.tasks.offer(task);
+		this.selector.wakeup();
+	}
+
+	/**
+	 * Run a task on the reactor on behalf of a handler, after the ones already handed to it. If it throws, the
+	 * handler fails.
+	 * @param handler Handler the task works for.
+	 * @param task Task to run.
+	 */
+	public void execute(EventHandler handler, Runnable task) {
+		execute(guard(handler, task));
+	}
+
+	/**
+	 * Run a task on the reactor on behalf of a handler: right away if called from the reactor itself, after the
+	 * ones already handed to it otherwise. If it throws, the handler fails (not the caller's).
+	 * @param handler Handler the task works for.
+	 * @param task Task to run.
+	 */
+	public void run(EventHandler handler, Runnable task) {
+		if (inReactor())
+			guard(handler, task).run();
+		else
+			execute(handler, task);
+	}
+
+	/**
+	 * Wrap a task so that it fails its handler if it throws.
+	 * @param handler Handler the task works for.
+	 * @param task Task to run.
+	 * @return Wrapped task.
+	 */
+	private static Runnable guard(EventHandler handler, Runnable task) {
+		return () -> {
+			try {
+				task.run();
+			} catch (RuntimeException e) {
+				handler.failed(e);
+			}
+		};
+	}
+
+	/**
+	 * Whether the caller is the reactor itself (i.e. a task or a handler).
+	 * @return True if called from the reactor, false otherwise.
+	 */
+	public boolean inReactor() {
+		return Thread.currentThread() == this.thread;
+	}
+
+	/**
+	 * Register a channel with the selector. Must be called from the reactor (i.e. from a task or a handler).
+	 * @param channel Channel, in non-blocking mode.
+	 * @param ops Events of interest.
+	 * @param handler Handler of the events.
+	 * @return Selection key of the channel.
+	 */
+	public SelectionKey register(SelectableChannel channel, int ops, EventHandler handler) throws ClosedChannelException {
+		return channel.register(this.selector, ops, handler);
+	}
+
+	@Override
+	public void run() {
+		this.thread = Thread.currentThread();
+		while (true) {
+			try {
+				this.selector.select();
+			} catch (IOException e) {
+				report(new RuntimeException(e));
+				pause();
+			}
+
+			Runnable task;
+			while ((task = this.tasks.poll()) != null) {
+				try {
+					task.run();
+				} catch (RuntimeException e) {
+					// Either the handler's failed() threw too, or nobody owns the task.
+					report(e);
+				}
+			}
+
+			Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+
+				if (!key.isValid())
+					continue;
+
+				EventHandler handler = (EventHandler) key.attachment();
+				try {
+					handler.ready(key);
+				} catch (RuntimeException e) {
+					fail(key, handler, e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Close the channel of a handler that threw, and tell the handler.
+	 * @param key Selection key of the channel.
+	 * @param handler Handler of the channel.
+	 * @param cause What the handler threw.
+	 */
+	private void fail(SelectionKey key, EventHandler handler, RuntimeException cause) {
+		key.cancel();
+		try {
+			key.channel().close();
+		} catch (IOException e) {
+			// oh well...
+		}
+
+		try {
+			handler.failed(cause);
+		} catch (RuntimeException e) {
+			if (e != cause)
+				e.addSuppressed(cause);
+			report(e);
+		}
+	}
+
+	/**
+	 * Wait a little before selecting again.
+	 */
+	private static void pause() {
+		try {
+			Thread.sleep(SELECT_RETRY_TIME_MS);
+		} catch (InterruptedException e) {
+			// Nobody stops the reactor: go on.
+		}
+	}
+
+	/**
+	 * Report an exception nobody can handle, like an uncaught exception of the reactor's thread, without stopping
+	 * the loop.
+	 * @param e Exception.
+	 */
+	private static void report(RuntimeException e) {
+		Thread thread = Thread.currentThread();
+		thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+	}
+}
@@ -0,0 +1,211 @@
+package backend;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Read-only table of the best moves of the early positions, as computed offline by OpeningBookGenerator.
+ *
+ * A position and its mirror image (columns 0-6 swapped with 6-0) are worth the same, so the book only holds one of
+ * them: the canonical one, i.e. the one with the smaller Zobrist hash, and the moves of the other are mirrored on
+ * lookup.
+ *
+ * File format (big-endian): a header (magic number, version, number of plies covered, number of entries), then the
+ * entries' canonical hashes in ascending order, then their results in the same order, each packed into an int:
+ * score (16 bits), best move (4) and depth searched (8). Lookups are binary searches straight in the file, which is
+ * mapped read-only: the book takes no heap, and the processes using the same file share it through the page cache.
+ */
+public class OpeningBook {
+	protected static final int MAGIC = 0x43344F42; // "C4OB"
+	protected static final int VERSION = 1;
+	protected static final int HEADER_SIZE = 16;
+	public static final int NOT_FOUND = -1;
+
+	private static final long COLUMN_MASK = (1L << GameBoard.HEIGHT) - 1;
+
+	private final MappedByteBuffer buffer;
+	private final int plies;
+	private final int count;
+	private final int valuesOffset;
+
+	/**
+	 * Constructor: maps a book file.
+	 * @param file Book file.
+	 */
+	public OpeningBook(File file) {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			// The mapping outlives the channel.
+			this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} catch (IOException e) {
+			throw new RuntimeException("Cannot open opening book " + file + ": " + e.getMessage(), e);
+		}
+
+		if (this.buffer.capacity() < HEADER_SIZE || this.buffer.getInt(0) != MAGIC || this.buffer.getInt(4) != VERSION)
+			throw new RuntimeException("Not an opening book (version " + VERSION + "): " + file);
+
+		this.plies = this.buffer.getInt(8);
+		this.count = this.buffer.getInt(12);
+		this.valuesOffset = HEADER_SIZE + 8 * this.count;
+		if (this.count < 0 || this.buffer.capacity() != this.valuesOffset + 4L * this.count)
+			throw new RuntimeException("Truncated opening book: " + file);
+	}
+
+	/**
+	 * Look a position up.
+	 * @param board Position.
+	 * @return Packed result (see getMove() and co.), with the move as it should be played on this board, or NOT_FOUND
+	 * if the position is not in the book.
+	 */
+	public int probe(GameBoard board) {
+		if (board.getMoveCount() > this.plies)
+			return NOT_FOUND;
+
+		long hash = board.getCheckNumber();
+		long mirrorHash = Zobrist.hash(mirror(board.getTokens(1)), mirror(board.getTokens(2)));
+
+		int index = find(Math.min(hash, mirrorHash));
+		if (index < 0)
+			return NOT_FOUND;
+
+		int value = this.buffer.getInt(this.valuesOffset + 4 * index);
+		return mirrorHash < hash ? mirrorMove(value) : value;
+	}
+
+	/**
+	 * Helper function to binary search the hashes.
+	 * @param hash Canonical hash of a position.
+	 * @return Index of its entry, or -1 if there is none.
+	 */
+	private int find(long hash) {
+		int low = 0;
+		int high = this.count - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			long key = this.buffer.getLong(HEADER_SIZE + 8 * middle);
+			if (key < hash)
+				low = middle + 1;
+			else if (key > hash)
+				high = middle - 1;
+			else
+				return middle;
+		}
+		return -1;
+	}
+
+	/**
+	 * Getter function for the number of plies the book covers: positions with more tokens are never in it.
+	 * @return Number of plies.
+	 */
+	public int getPlies() {
+		return this.plies;
+	}
+
+	/**
+	 * Getter function for the number of positions in the book.
+	 * @return Number of entries.
+	 */
+	public int getSize() {
+		return this.count;
+	}
+
+	/**
+	 * Write a book file.
+	 * @param file Book file, replaced if it exists.
+	 * @param plies Number of plies covered.
+	 * @param entries Packed results (see pack()), by canonical hash (see canonicalHash()).
+	 */
+	public static void write(File file, int plies, Map<Long, Integer> entries) {
+		long[] hashes = new long[entries.size()];
+		int i = 0;
+		for (long hash : entries.keySet())
+			hashes[i++] = hash;
+		Arrays.sort(hashes);
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(plies);
+			out.writeInt(hashes.length);
+			for (long hash : hashes)
+				out.writeLong(hash);
+			for (long hash : hashes)
+				out.writeInt(entries.get(hash));
+		} catch (IOException e) {
+			throw new RuntimeException("Cannot write opening book " + file + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Hash a position is stored under: the smaller of its own and its mirror image's.
+	 * @param board Position.
+	 * @return Canonical hash.
+	 */
+	public static long canonicalHash(GameBoard board) {
+		return Math.min(board.getCheckNumber(), Zobrist.hash(mirror(board.getTokens(1)), mirror(board.getTokens(2))));
+	}
+
+	/**
+	 * Whether the canonical form of a position is its mirror image, in which case the moves stored are mirrored.
+	 * @param board Position.
+	 * @return True if so, false otherwise.
+	 */
+	public static boolean isMirrored(GameBoard board) {
+		return Zobrist.hash(mirror(board.getTokens(1)), mirror(board.getTokens(2))) < board.getCheckNumber();
+	}
+
+	/**
+	 * Mirror image of a bitboard (see GameBoard): column c becomes column 6 - c.
+	 * @param tokens Cells.
+	 * @return Mirrored cells.
+	 */
+	private static long mirror(long tokens) {
+		long mirrored = 0;
+		for (int column = 0; column < GameBoard.COLUMNS; column++)
+			mirrored |= ((tokens >>> (column * GameBoard.HEIGHT)) & COLUMN_MASK) << ((GameBoard.COLUMNS - 1 - column) * GameBoard.HEIGHT);
+		return mirrored;
+	}
+
+	/**
+	 * Pack a result into an int.
+	 * @return Packed result.
+	 */
+	protected static int pack(int score, int move, int depth) {
+		return (score & 0xFFFF) | (move << 16) | (depth << 20);
+	}
+
+	/**
+	 * @return Packed result with its move mirrored.
+	 */
+	protected static int mirrorMove(int value) {
+		return pack(getScore(value), GameBoard.COLUMNS - 1 - getMove(value), getDepth(value));
+	}
+
+	/**
+	 * @return Score of a packed result, from the point of view of the player to move (see Solver).
+	 */
+	public static int getScore(int value) {
+		return (short) value;
+	}
+
+	/**
+	 * @return Best move of a packed result.
+	 */
+	public static int getMove(int value) {
+		return (value >>> 16) & 0xF;
+	}
+
+	/**
+	 * @return Depth a packed result was searched at.
+	 */
+	public static int getDepth(int value) {
+		return (value >>> 20) & 0xFF;
+	}
+}
@@ -0,0 +1,141 @@
+package backend;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Offline generator of the OpeningBook: solves every position reachable in up to a number of plies (once per mirror
+ * pair, and leaving out won games), and writes the best moves to a book file.
+ *
+ * The Solver only trusts proven results (see Solver.isProven()), so only those go in the book. By default there is
+ * no time limit: every position is searched until solved, which takes hours for the first plies. The positions are
+ * solved deepest first, and all the searches share one transposition table which keeps its results from one
+ * position to the next, so a position finds the results of the ones after it ready in the table. With a time limit,
+ * the positions not solved within it are left out, and counted.
+ */
+public class OpeningBookGenerator {
+	protected static final int DEFAULT_PLIES = 4;
+	protected static final int DEFAULT_TIME_MS = 0; // No limit
+	protected static final int TABLE_BITS = 22; // 64 MB
+
+	private final Solver solver;
+	private final int plies;
+	private final long time;
+	private final Set<Long> visited;
+	private final Map<Long, Integer> entries;
+	private int unproven;
+
+	/**
+	 * Constructor: sets up fields.
+	 * @param plies Number of plies to cover.
+	 * @param time Search time per position, in milliseconds, or Solver.NO_TIME_LIMIT.
+	 * @param threads Number of search threads.
+	 */
+	public OpeningBookGenerator(int plies, long time, int threads) {
+		// A single search as far as the table is concerned: results of earlier positions are not replaced first.
+		TranspositionTable table = new TranspositionTable(TABLE_BITS) {
+			@Override
+			public void nextGeneration() {
+				// Keep the generation.
+			}
+		};
+		this.solver = new Solver(table, threads);
+		this.plies = plies;
+		this.time = time;
+		this.visited = new HashSet<Long>();
+		this.entries = new HashMap<Long, Integer>();
+	}
+
+	/**
+	 * Search every position and write the book.
+	 * @param file Book file.
+	 */
+	public void generate(File file) {
+		try {
+			visit(new int[this.plies], 0);
+		} finally {
+			this.solver.close();
+		}
+		OpeningBook.write(file, this.plies, this.entries);
+	}
+
+	/**
+	 * Helper function to search the positions after a position, depth first, then the position itself.
+	 * @param moves Moves leading to the position.
+	 * @param count Number of moves.
+	 */
+	private void visit(int[] moves, int count) {
+		GameBoard board = new GameBoard();
+		for (int i = 0; i < count; i++)
+			board.play(moves[i], board.getTypeToMove());
+
+		long hash = OpeningBook.canonicalHash(board);
+		if (board.getWinner() != GameBoard.NOBODY || !this.visited.add(hash))
+			return;
+
+		if (count < this.plies) {
+			for (int column = 0; column < GameBoard.COLUMNS; column++) {
+				if (board.canPlay(column)) {
+					moves[count] = column;
+					visit(moves, count + 1);
+				}
+			}
+		}
+
+		int move = this.solver.getBestMove(board, this.time);
+		if (OpeningBook.isMirrored(board))
+			move = GameBoard.COLUMNS - 1 - move;
+		int value = OpeningBook.pack(this.solver.getScore(), move, this.solver.getDepth());
+		if (Solver.isProven(value, count))
+			this.entries.put(hash, value);
+		else
+			this.unproven++;
+
+		int searched = this.entries.size() + this.unproven;
+		if (searched % 100 == 0)
+			System.out.println(searched + " positions...");
+	}
+
+	/**
+	 * Getter function for the number of positions in the book, i.e. solved.
+	 * @return Number of positions.
+	 */
+	public int getSize() {
+		return this.entries.size();
+	}
+
+	/**
+	 * Getter function for the number of positions left out of the book, as the search did not solve them in time.
+	 * @return Number of positions.
+	 */
+	public int getUnprovenCount() {
+		return this.unproven;
+	}
+
+	/**
+	 * Generate a book.
+	 * @param args Book file, then optional number of plies (defaults to 4), search time per position in milliseconds
+	 * (defaults to 0, no limit) and number of search threads (defaults to the number of processors).
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.out.println("Usage: OpeningBookGenerator file [plies [time-ms [threads]]]");
+			System.exit(2);
+		}
+
+		File file = new File(args[0]);
+		int plies = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PLIES;
+		long time = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_TIME_MS;
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+		long start = System.currentTimeMillis();
+		OpeningBookGenerator generator = new OpeningBookGenerator(plies, time, threads);
+		generator.generate(file);
+
+		System.out.println(generator.getSize() + " positions up to " + plies + " plies (" + generator.getUnprovenCount()
+				+ " left out, not solved in time) in " + (System.currentTimeMillis() - start) / 1000 + " s, " + file.length() + " bytes: " + file);
+	}
+}
@@ -5,6 +5,10 @@ import java.net.UnknownHostException;
 
 /**
  * Representation of a player.
+ *
+ * The address is parsed once, when the player is created, into a packed integer along with the mask of its prefix:
+ * an IPv4 address takes the low 32 bits of the low half, an IPv6 address both halves. Subnet checks then come down
+ * to a few bitwise operations, and never go through the resolver.
  */
 public class Player {
 	protected static long RANDOM_NUMBER_UPPER_BOUND = 100000;
@@ -13,23 +17,24 @@ public class Player {
 	private final String hostname;
 	private final short mask;
 	private final int coin; //0 or 1
+	private final boolean ipv6;
+	private final long addressHigh, addressLow; // Packed address
+	private final long maskHigh, maskLow; // Bits of the address that make up the prefix
 	
 	/**
 	 * Determines this player's IP and infers this player's coin value based on the coin value of the opponent
 	 * @param opponent this player's opponent
 	 */
 	public Player(Player opponent) {
-		String fullIPAsString = MyIP.getMyIP();
-		String[] fullIP = MyIP.getMyIP().split("/");
-		
-		if(fullIP.length != 2) {
-			throw new RuntimeException("Error, the IP: '" + fullIPAsString + "' has an unexpected format");
-		}
-		
-		this.hostname = fullIP[0];
-		this.mask = Short.parseShort(fullIP[1]);
-		this.coin = inferCoin(opponent.getCoin());
-		this.fileName = generateFileName(this.hostname);
+		this(MyIP.getMyIP(), inferCoin(opponent.getCoin()));
+	}
+	
+	/**
+	 * @param fullIP Player's IP and mask, in the form hostname/mask
+	 * @param coin player's coin value (either 0 or 1)
+	 */
+	private Player(String fullIP, int coin) {
+		this(splitIP(fullIP), coin, null);
 	}
 	
 	/**
@@ -37,33 +42,55 @@ public class Player {
 	 * @param coin player's coin value (either 0 or 1)
 	 */
 	public Player(String hostname, short mask, int coin) {
+		this(hostname, mask, coin, generateFileName(hostname));
+	}
+	
+	/**
+	 * @param hostname Player's IP
+	 * @param mask Player's mask (prefix length)
+	 * @param coin player's coin value (either 0 or 1)
+	 * @param fileName Player's fallback server filename
+	 */
+	private Player(String hostname, short mask, int coin, String fileName) {
 		this.hostname = hostname;
 		this.mask = mask;
 		this.coin = coin;
-		this.fileName = generateFileName(this.hostname);
+		this.fileName = fileName;
+		
+		byte[] address = parseAddress(hostname);
+		this.ipv6 = address.length == 16;
+		int bits = address.length * 8;
+		if (mask < 0 || mask > bits)
+			throw new RuntimeException("Error, the mask: '" + mask + "' is out of range for the IP: '" + hostname + "'");
+		
+		this.addressHigh = pack(address, 0, address.length - 8);
+		this.addressLow = pack(address, Math.max(0, address.length - 8), address.length);
+		this.maskHigh = prefixMask(mask, bits - 64);
+		this.maskLow = prefixMask(mask - Math.max(0, bits - 64), Math.min(64, bits));
 	}
 	
 	/**
 	 * Constructs the player object based on player info as written in the text file on the server.
 	 * @param playerInfo format:hostname,coinValue
 	 */
-	public Player(String playerInfo) {		
-		String[] components = playerInfo.split(",");
-		
-		if(components.length != 3) {
-			throw new RuntimeException("Error, the player info: '" + playerInfo + "' has an unexpected format");
-		}
+	public Player(String playerInfo) {
+		this(getComponents(playerInfo));
+	}
 	
-		String[] fullIP = components[0].split("/");
-		
-		if(fullIP.length != 2) {
-			throw new RuntimeException("Error, the IP: '" + components[0] + "' has an unexpected format");
-		}
-		
-		this.hostname = fullIP[0];
-		this.mask = Short.parseShort(fullIP[1]);
-		this.coin = Integer.parseInt(components[1]);
-		this.fileName = components[2];
+	/**
+	 * @param components Player info as written in the text file on the server, split into its 3 components
+	 */
+	private Player(String[] components) {
+		this(splitIP(components[0]), Integer.parseInt(components[1]), components[2]);
+	}
+	
+	/**
+	 * @param fullIP Player's IP and mask, split
+	 * @param coin player's coin value (either 0 or 1)
+	 * @param fileName Player's fallback server filename, or null to generate one
+	 */
+	private Player(String[] fullIP, int coin, String fileName) {
+		this(fullIP[0], Short.parseShort(fullIP[1]), coin, fileName != null ? fileName : generateFileName(fullIP[0]));
 	}
 		
 	/**
@@ -71,17 +98,7 @@ public class Player {
 	 * and randomly assigns the player a coin value (0 or 1).
 	 */
 	public Player() {
-		String fullIPAsString = MyIP.getMyIP();
-		String[] fullIP = MyIP.getMyIP().split("/");
-		
-		if(fullIP.length != 2) {
-			throw new RuntimeException("Error, the IP: '" + fullIPAsString + "' has an unexpected format");
-		}
-		
-		this.hostname = fullIP[0];
-		this.mask = Short.parseShort(fullIP[1]);
-		this.coin = coinFlip();
-		this.fileName = generateFileName(this.hostname);
+		this(MyIP.getMyIP(), coinFlip());
 	}
 	
 	/**
@@ -90,62 +107,127 @@ public class Player {
 	 * @return		Whether both players are in the same subnet
 	 */
 	public boolean inSameSubnet(Player other) {
-		short mask = other.getMask();
-		if (this.mask < mask)
-			mask = this.mask;
+		if (this.ipv6 != other.ipv6)
+			return false;
+		
+		// The masks are prefixes: the shorter one is what both have in common.
+		return ((this.addressHigh ^ other.addressHigh) & this.maskHigh & other.maskHigh) == 0
+				&& ((this.addressLow ^ other.addressLow) & this.maskLow & other.maskLow) == 0;
+	}
+	
+	/**
+	 * Key of the subnet of this player, e.g. to group players by subnet. Players with the same key are in the same
+	 * subnet, barring hash collisions (inSameSubnet() says for sure); players in the same subnet but with
+	 * masks of different lengths get different keys.
+	 * @return Hash of the address family, the prefix and its length
+	 */
+	public long getSubnetKey() {
+		long key = (this.ipv6 ? 0x9E3779B97F4A7C15L : 0) ^ this.mask;
+		key = key * 0xBF58476D1CE4E5B9L + (this.addressHigh & this.maskHigh);
+		key = key * 0xBF58476D1CE4E5B9L + (this.addressLow & this.maskLow);
+		return key ^ (key >>> 31);
+	}
+	
+	/**
+	 * Split player info into its components.
+	 * @param playerInfo format:hostname/mask,coinValue,fileName
+	 * @return The 3 components
+	 */
+	private static String[] getComponents(String playerInfo) {
+		String[] components = playerInfo.split(",");
+		
+		if(components.length != 3) {
+			throw new RuntimeException("Error, the player info: '" + playerInfo + "' has an unexpected format");
+		}
+		
+		return components;
+	}
+	
+	/**
+	 * @param fullIP IP and mask, in the form hostname/mask
+	 * @return hostname and mask
+	 */
+	private static String[] splitIP(String fullIP) {
+		String[] parts = fullIP.split("/");
 		
-		long thisIP = ipAsInt(this.hostname);
-		long otherIP = ipAsInt(other.getHostname());
+		if(parts.length != 2) {
+			throw new RuntimeException("Error, the IP: '" + fullIP + "' has an unexpected format");
+		}
 		
-		return getMaskedValue(thisIP, mask) == getMaskedValue(otherIP, mask);
+		return parts;
 	}
 	
 	/**
-	 * Gets the ip as a long integer	
+	 * Gets the bytes of an IP address. Dotted IPv4 addresses are parsed here; anything else is handed to
+	 * InetAddress, which only checks IPv6 literals, but resolves host names.
 	 * @param hostname IP as string
-	 * @return IP as long integer
+	 * @return 4 bytes for an IPv4 address, 16 for an IPv6 address
 	 */
-	private long ipAsInt(String hostname) {
-		byte[] ipAsByteArray;
+	private static byte[] parseAddress(String hostname) {
+		byte[] address = new byte[4];
+		int part = 0;
+		int value = -1;
+		for (int i = 0; i <= hostname.length(); i++) {
+			char c = i < hostname.length() ? hostname.charAt(i) : '.';
+			if (c >= '0' && c <= '9' && value < 256) {
+				value = (value < 0 ? 0 : value * 10) + (c - '0');
+			} else if (c == '.' && value >= 0 && value < 256 && part < 4) {
+				address[part++] = (byte) value;
+				value = -1;
+			} else {
+				part = -1;
+				break;
+			}
+		}
+		if (part == 4)
+			return address;
 		
 		try {
-			ipAsByteArray = InetAddress.getByName(hostname).getAddress();
+			// The zone of a link-local address (e.g. %eth0) says nothing about the subnet.
+			int zone = hostname.indexOf('%');
+			address = InetAddress.getByName(zone < 0 ? hostname : hostname.substring(0, zone)).getAddress();
 		} catch (UnknownHostException e) {
 			throw new RuntimeException(e);
 		}
 		
-		long ipAsInt = 0;
-		for (byte b : ipAsByteArray) {
-			ipAsInt <<= 8;
-			ipAsInt += Byte.toUnsignedInt(b);
-		}
-		
-		return ipAsInt;
+		// IPv4-mapped IPv6 addresses come back as IPv4 ones.
+		return address;
 	}
 	
 	/**
-	 * Return only the unmasked part of the IP address
-	 * @param ip IP as long integer
-	 * @param mask Length of masked part of the IP
-	 * @return Unmasked part of the IP as long integer
+	 * Pack bytes of an address into a long.
+	 * @param address Bytes of the address
+	 * @param from Index of the first byte (if negative, the missing bytes count as 0)
+	 * @param to Index after the last byte
+	 * @return Packed bytes, the last one in the least significant bits
 	 */
-	private long getUnmaskedValue(long ip, short mask) {
-		long unmaskedPart = 0;
-		for (short m = 0; m < 32 - mask; m++) {
-			unmaskedPart <<= 1;
-			unmaskedPart += 1;
-		}
-		return ip & unmaskedPart;
+	private static long pack(byte[] address, int from, int to) {
+		long packed = 0;
+		for (int i = Math.max(0, from); i < to; i++)
+			packed = (packed << 8) | Byte.toUnsignedLong(address[i]);
+		return packed;
+	}
+	
+	/**
+	 * Mask of the first bits of a packed half of an address.
+	 * @param prefix Number of bits of the prefix in this half (capped to the bits of the half)
+	 * @param bits Number of bits in this half (at most 64)
+	 * @return Mask
+	 */
+	private static long prefixMask(int prefix, int bits) {
+		if (prefix <= 0 || bits <= 0)
+			return 0;
+		long all = bits == 64 ? -1L : (1L << bits) - 1;
+		return prefix >= bits ? all : all & ~(all >>> prefix);
 	}
 	
 	/**
-	 * Return only the masked part of the IP address
-	 * @param ip IP as long integer
-	 * @param mask Length of masked part of the IP
-	 * @return Masked part of the IP as long integer
+	 * Same player with another coin value, e.g. when the matchmaker decides who goes first.
+	 * @param coin New coin value (either 0 or 1)
+	 * @return Copy of this player with the given coin value
 	 */
-	private long getMaskedValue(long ip, short mask) {
-		return ip - getUnmaskedValue(ip, mask);
+	public Player withCoin(int coin) {
+		return new Player(this.hostname, this.mask, coin, this.fileName);
 	}
 	
 	/**
@@ -190,7 +272,7 @@ public class Player {
 	 * @param opponentCoin the coin belonging to the opponent
 	 * @return this player's coin
 	 */
-	private int inferCoin(int opponentCoin) {
+	private static int inferCoin(int opponentCoin) {
 		int myCoin = -1;
 		if(opponentCoin == 0) {
 			myCoin = 1;
@@ -207,7 +289,7 @@ public class Player {
 	 * Generate 0 or 1 randomly
 	 * @return returns 0 or 1 randomly
 	 */
-	private int coinFlip() {
+	private static int coinFlip() {
 		double random = Math.random();
 		if (random < 0.5) {
 			return 0;
@@ -221,8 +303,8 @@ public class Player {
 	 * @param ip User's IP address
 	 * @return Random file name in the form a-b-c-d-n where a.b.c.d is the IP address and n is a random number.
 	 */
-	private String generateFileName(String ip) {
-	    String fileName = ip.replace(".", "-");
+	private static String generateFileName(String ip) {
+	    String fileName = ip.replace('.', '-').replace(':', '-').replace('%', '-');
 	    long rand = (long) (Math.random() * RANDOM_NUMBER_UPPER_BOUND);
 	    return fileName + "-" + rand + ".txt";
 	}
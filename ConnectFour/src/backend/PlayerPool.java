@@ -1,7 +1,10 @@
 package backend;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
 
 import frontend.PoolObserver;
 
@@ -10,28 +13,52 @@ import frontend.PoolObserver;
  * is a text file hosted on Fred Glozman's SOCS server where stringified players are inserted. When a player
  * gets in queue, they add themself to the file, and when they find another player and a match is made,
  * they both get removed.
+ *
+ * The waiting is done by tasks of the BackgroundExecutor, one at a time: leaving the pool cancels the current one.
+ * They are queued rather than submitted, since nobody would hear of a rejection: with too many tasks running,
+ * joining the pool is only delayed.
+ *
+ * If the connectfour.matchmaker system property gives the host:port of a MatchmakingServer, the pool is a mere
+ * client of that server instead: no text file is involved, and any number of players can wait at the same time.
+ *
+ * The game has one pool (getInstance()), for the player at this host; simulated players get pools of their own,
+ * each with a made-up address.
  */
 public class PlayerPool {
 	private final ServerTextFileIO file;
-	private final List<Player> pool;
-	private Player self;
-	private boolean removedSelf;
+	private volatile List<Player> pool; // Immutable snapshot of the file, replaced as a whole on each reload
+	private volatile Player self;
+	private volatile boolean removedSelf;
+	private final String matchmakerAddress;
+	private final String address; // a.b.c.d/m, or null for this host's
+	private MatchmakingClient matchmaker;
+	private volatile Future<?> task; // Adder or listener currently running in the background
   
-	protected static final String PLAYER_POOL_FILE_NAME = "PlayerPool.txt";
+	public static final String PLAYER_POOL_FILE_NAME = "PlayerPool.txt";
 	protected static final int MAX_AVAILABILITY_WAIT_TIME = 5000; // 5 seconds
 	protected static final int AVAILABILITY_WAIT_TIME = 500; // 1/2 seconds
 	protected static final long POOL_CHECK_TIMEOUT = 100;
+	public static final String MATCHMAKER_PROPERTY = "connectfour.matchmaker";
 
 	private static PlayerPool instance; 
 	
 	/**
 	 * Private constructor to enforce singleton pattern.
-	 * @param observer will get notified when a match is made 
 	 */
 	private PlayerPool() {
+		this(null);
+	}
+	
+	/**
+	 * Constructor for a pool of its own, e.g. for a simulated player.
+	 * @param address Address the player is given, in the form a.b.c.d/m (null for this host's).
+	 */
+	public PlayerPool(String address) {
 		file = ServerTextFileIO.getInstance();
-		pool = new LinkedList<Player>();
+		pool = Collections.emptyList();
 		removedSelf = false;
+		matchmakerAddress = System.getProperty(MATCHMAKER_PROPERTY);
+		this.address = address;
 	}
 	
 	/**
@@ -50,10 +77,19 @@ public class PlayerPool {
 	 * Remove yourself from the player pool.
 	 */
 	public void removeSelf() {
-		if (self != null) {
+		if (matchmaker != null) {
+			matchmaker.cancel();
+			matchmaker = null;
+			removedSelf = true;
+		} else if (self != null) {
 			file.removeLine(PLAYER_POOL_FILE_NAME, self.toString());
 			removedSelf = true;
 		}
+		
+		// Last, since the listener itself leaves the pool this way when it has to start over.
+		Future<?> task = this.task;
+		if (task != null)
+			task.cancel(true);
 	}
 			
 	/**
@@ -65,13 +101,19 @@ public class PlayerPool {
 	public void addSelf(PoolObserver observer) {
 		removedSelf = false;
 		
-		Thread adder = new Thread() {
+		if (matchmakerAddress != null) {
+			addSelfToMatchmaker(observer);
+			return;
+		}
+		
+		Runnable adder = new Runnable() {
 			public void run() {	
 				waitForAvailability(); // Waits until there are less than 2 players in the pool.
+				List<Player> pool = PlayerPool.this.pool;
 						
 				// No player in the pool. add yourself to the pool.
 				if (pool.size() == 0) {
-					Player me = new Player();
+					Player me = newPlayer(null);
 					file.addLine(PLAYER_POOL_FILE_NAME, me.toString());
 					
 					self = me;
@@ -82,7 +124,7 @@ public class PlayerPool {
 				// Add yourself to the pool but make sure your coin value is complementary to the player in the pool.
 				else if (pool.size() == 1) {
 					Player opponent = pool.get(0);
-					Player me = new Player(opponent);
+					Player me = newPlayer(opponent);
 					file.addLine(PLAYER_POOL_FILE_NAME, me.toString());
 					
 					self = me;
@@ -95,9 +137,51 @@ public class PlayerPool {
 		    }  
 		};
 
-		adder.start();
+		task = BackgroundExecutor.getInstance().queue(adder);
 	}
 
+	/**
+	 * Add yourself to the matchmaking server's queue. The server decides the coin values and pushes the match,
+	 * at which point the observer is called back.
+	 * @param observer will get notified when a match is made
+	 */
+	private void addSelfToMatchmaker(PoolObserver observer) {
+		MatchmakingClient client = new MatchmakingClient(matchmakerAddress);
+		matchmaker = client;
+		
+		Runnable adder = new Runnable() {
+			public void run() {
+				Player[] match = client.awaitMatch(newPlayer(null));
+				
+				// Null if the player left the queue in the meantime.
+				if (match != null) {
+					self = match[0];
+					observer.startGame(match[0], match[1]);
+				}
+			}
+		};
+		
+		task = BackgroundExecutor.getInstance().queue(adder);
+	}
+	
+	/**
+	 * Helper function to create the player joining the pool, at this host's address unless the pool has its own.
+	 * @param opponent Player already in the pool, whose coin value is the complement of the new player's; null to
+	 * flip a coin.
+	 * @return New player.
+	 */
+	private Player newPlayer(Player opponent) {
+		if (address == null)
+			return opponent == null ? new Player() : new Player(opponent);
+		
+		String[] fullIP = address.split("/");
+		if (fullIP.length != 2)
+			throw new RuntimeException("Error, the IP: '" + address + "' has an unexpected format");
+		
+		int coin = opponent == null ? ThreadLocalRandom.current().nextInt(2) : 1 - opponent.getCoin();
+		return new Player(fullIP[0], Short.parseShort(fullIP[1]), coin);
+	}
+	
 	/**
 	 * Wait for second player to connect
 	 * @param me my player info
@@ -106,7 +190,7 @@ public class PlayerPool {
 		if (self == null)
 			throw new RuntimeException("Self is null, should not call listen!");
 
-		Thread listener = new Thread() {
+		Runnable listener = new Runnable() {
 			public void run() {
 		    	Player opponent = null; 
 
@@ -114,10 +198,11 @@ public class PlayerPool {
 					try {
 						Thread.sleep(POOL_CHECK_TIMEOUT);
 					} catch (InterruptedException e) {
-						// whatever...
+						// Cancelled: the player left the pool.
+						return;
 					}
 
-		    		reloadPool();
+		    		List<Player> pool = reloadPool();
 		    		
 		    		if (pool.size() > 2) {
 		    			removeSelf();
@@ -155,7 +240,7 @@ public class PlayerPool {
 		    }
 		};
 
-		listener.start();
+		task = BackgroundExecutor.getInstance().queue(listener);
 	}
 	
 	/**
@@ -182,7 +267,7 @@ public class PlayerPool {
 			    // there must have been an error in a previous execution. clear the file and continue.
 			    else {
 			        file.clear(PLAYER_POOL_FILE_NAME);
-			        pool.clear();
+			        pool = Collections.emptyList();
 			        break;
 			    }
 			} else {
@@ -194,15 +279,20 @@ public class PlayerPool {
 	}	
 	
 	/**
-	 * Reload the player pool from the player info in the file on the server.
+	 * Reload the player pool from the player info in the file on the server. The new pool is built on the side and
+	 * swapped in at once, so that the adder and listener threads never see a half-loaded pool.
+	 * @return The new pool.
 	 */
-	private void reloadPool() {
-		pool.clear();
+	private List<Player> reloadPool() {
+		List<Player> players = new ArrayList<Player>();
 		
 		String content = file.read(PLAYER_POOL_FILE_NAME);
 		if (content != null && content.length() > 0)
 			for (String line : content.split("\n"))
 				if (line != null && line.length() > 0)
-					pool.add(new Player(line));
+					players.add(new Player(line));
+		
+		pool = Collections.unmodifiableList(players);
+		return pool;
 	}
 }
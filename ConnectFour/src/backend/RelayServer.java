@@ -0,0 +1,319 @@
+package backend;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Relay for players who cannot connect to each other (e.g. behind different NATs): both connect out to the relay,
+ * which forwards each one's frames to the other as they come, without looking into them. Unlike the GameServer, it
+ * hosts nothing: a frame goes through a single hop and the game itself is played between the players, as over a
+ * direct connection. Connections are served by the NioReactor, so a single thread relays thousands of games.
+ *
+ * Protocol: the same as the GameServer's (see GameServer.joinFrame()), so that players talk to it through a
+ * GameServerConnection: the first frame is a TEXT frame "JOIN coin key", and every frame after that is forwarded to
+ * the player who joined with the same key and the other coin. Frames sent before the opponent shows up are held
+ * until they do. The relay answers the join request either way: once the opponent joins, both players get a TEXT
+ * frame "PAIRED" ahead of each other's frames; if the opponent does not join within JOIN_TIME_LIMIT, the relay hangs
+ * up, dropping the frames held. The relay alone makes that call, so both players learn the same outcome: paired, or
+ * neither of them is (see RelayMessageHandler). When either player hangs up, the relay hangs up on the other.
+ *
+ * getLocalInstance() starts a relay in this process, on the loopback interface, for tests and load generation.
+ */
+public class RelayServer implements NioReactor.EventHandler {
+	protected static final int DEFAULT_PORT = 9890;
+	protected static final int MAX_PENDING_FRAMES = 256; // Held for an opponent who has not joined yet
+	protected static final int JOIN_TIME_LIMIT = 3; // Time in seconds the opponent has to join
+	protected static final String PAIRED = "PAIRED";
+
+	private static volatile RelayServer localInstance;
+
+	private final NioReactor reactor;
+	private final ServerSocketChannel serverChannel;
+	private final ScheduledExecutorService timer;
+	private final Map<String, Peer> waiting; // Players whose opponent has not joined yet; reactor only
+	private final AtomicInteger pairCount;
+	private final AtomicLong frameCount;
+
+	/**
+	 * Constructor: binds the relay without starting it.
+	 * @param address Address to bind to (null for all interfaces).
+	 * @param port Port number to listen on (0 to pick any free port).
+	 */
+	public RelayServer(InetAddress address, int port) {
+		this.reactor = NioReactor.getInstance();
+		try {
+			this.serverChannel = ServerSocketChannel.open();
+			this.serverChannel.bind(new InetSocketAddress(address, port), 1024);
+			this.serverChannel.configureBlocking(false);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+
+		this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "RelayServer-timer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.waiting = new HashMap<String, Peer>();
+		this.pairCount = new AtomicInteger();
+		this.frameCount = new AtomicLong();
+	}
+
+	/**
+	 * Relay running in this process, on the loopback interface and any free port, started the first time around
+	 * (lazy evaluation).
+	 * @return Instance of RelayServer.
+	 */
+	public static RelayServer getLocalInstance() {
+		if (localInstance == null) {
+			synchronized (RelayServer.class) {
+				if (localInstance == null) {
+					RelayServer relay = new RelayServer(InetAddress.getLoopbackAddress(), 0);
+					relay.start();
+					localInstance = relay;
+				}
+			}
+		}
+
+		return localInstance;
+	}
+
+	/**
+	 * Check whether a relay accepts connections.
+	 * @param address Address of the relay as host:port.
+	 * @param timeout Longest time to wait for the connection, in milliseconds.
+	 * @return True if the connection went through (it is closed right away), false otherwise.
+	 */
+	public static boolean isReachable(String address, int timeout) {
+		int separator = address.lastIndexOf(':');
+		if (separator < 0)
+			throw new RuntimeException("Error, the relay address: '" + address + "' has an unexpected format");
+
+		try (Socket socket = new Socket()) {
+			socket.connect(new InetSocketAddress(address.substring(0, separator), Integer.parseInt(address.substring(separator + 1))), timeout);
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Start accepting players.
+	 */
+	public void start() {
+		this.reactor.execute(this, () -> {
+			try {
+				this.reactor.register(this.serverChannel, SelectionKey.OP_ACCEPT, this);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+	}
+
+	/**
+	 * Stop accepting players. Games in progress go on until their players leave.
+	 */
+	public void stop() {
+		try {
+			this.serverChannel.close();
+		} catch (IOException e) {
+			// oh well...
+		}
+	}
+
+	/**
+	 * Getter function for the address players connect to.
+	 * @return Address as host:port.
+	 */
+	public String getAddress() {
+		InetSocketAddress address = (InetSocketAddress) this.serverChannel.socket().getLocalSocketAddress();
+		return address.getAddress().getHostAddress() + ":" + address.getPort();
+	}
+
+	/**
+	 * Getter function for the port number the relay is bound to.
+	 * @return Port number.
+	 */
+	public int getPort() {
+		return this.serverChannel.socket().getLocalPort();
+	}
+
+	/**
+	 * Getter function for the number of pairs of players currently connected through the relay.
+	 * @return Number of pairs.
+	 */
+	public int getPairCount() {
+		return this.pairCount.get();
+	}
+
+	/**
+	 * Getter function for the number of frames forwarded since the relay started.
+	 * @return Number of frames.
+	 */
+	public long getFrameCount() {
+		return this.frameCount.get();
+	}
+
+	@Override
+	public void ready(SelectionKey key) {
+		try {
+			SocketChannel channel;
+			while ((channel = this.serverChannel.accept()) != null) {
+				Peer peer = new Peer();
+				peer.channel = FrameChannel.accept(channel, peer);
+			}
+		} catch (IOException e) {
+			// Server channel closed: stop accepting.
+			key.cancel();
+		}
+	}
+
+	@Override
+	public void failed(RuntimeException cause) {
+		// Nobody to tell: stop accepting, like when the server channel closes, and have the reactor report it.
+		// Games in progress go on.
+		stop();
+		throw cause;
+	}
+
+	/**
+	 * Pair a player with their opponent if they are waiting, or have them wait until JOIN_TIME_LIMIT runs out.
+	 * @param peer Player who just joined.
+	 * @return False if the player cannot join (their opponent took the same coin), true otherwise.
+	 */
+	private boolean join(Peer peer) {
+		Peer opponent = this.waiting.get(peer.key);
+		if (opponent == null) {
+			this.waiting.put(peer.key, peer);
+			peer.expiry = this.timer.schedule(() -> this.reactor.execute(() -> expire(peer)), JOIN_TIME_LIMIT, TimeUnit.SECONDS);
+			return true;
+		}
+		if (opponent.coin == peer.coin)
+			return false;
+
+		this.waiting.remove(peer.key);
+		opponent.expiry.cancel(false);
+		this.pairCount.incrementAndGet();
+		peer.opponent = opponent;
+		opponent.opponent = peer;
+		// Both hear about it before any of the other's frames.
+		peer.channel.send(Frame.ofText(PAIRED));
+		opponent.channel.send(Frame.ofText(PAIRED));
+		opponent.flush();
+		peer.flush();
+		return true;
+	}
+
+	/**
+	 * The time limit to join ran out: if the player is still waiting for their opponent, hang up on them.
+	 * @param peer Player who joined first.
+	 */
+	private void expire(Peer peer) {
+		if (this.waiting.remove(peer.key, peer))
+			peer.channel.close();
+	}
+
+	/**
+	 * Connection of one player: waits for them to join, then forwards their frames to their opponent.
+	 */
+	private class Peer implements FrameChannel.Handler {
+		private FrameChannel channel;
+		private String key;
+		private int coin;
+		private Peer opponent;
+		private ScheduledFuture<?> expiry; // Until the opponent joins
+		private List<Frame> pending = new ArrayList<Frame>(); // Frames received before the opponent joined
+		private boolean isClosed;
+
+		@Override
+		public void received(Frame frame) {
+			if (this.opponent != null) {
+				frameCount.incrementAndGet();
+				this.opponent.channel.send(frame);
+				return;
+			}
+
+			if (this.key != null) {
+				// Joined; the opponent is not there yet.
+				if (this.pending.size() < MAX_PENDING_FRAMES)
+					this.pending.add(frame);
+				else
+					this.channel.close();
+				return;
+			}
+
+			// Anything but a join request first is garbage.
+			String[] parts = frame.isText() ? frame.getText().split(" ", 3) : new String[0];
+			try {
+				if (parts.length == 3 && parts[0].equals(GameServer.JOIN)) {
+					this.coin = Integer.parseInt(parts[1]);
+					this.key = parts[2];
+					if (join(this))
+						return;
+				}
+			} catch (NumberFormatException e) {
+				// do nothing - i.e. hang up.
+			}
+			this.key = null;
+			this.channel.close();
+		}
+
+		/**
+		 * Forward the frames held for the opponent, who just joined.
+		 */
+		private void flush() {
+			if (!this.pending.isEmpty()) {
+				frameCount.addAndGet(this.pending.size());
+				this.opponent.channel.send(this.pending.toArray(new Frame[0]));
+			}
+			this.pending = null;
+		}
+
+		@Override
+		public void closed(IOException cause) {
+			this.isClosed = true;
+			if (this.key != null && waiting.remove(this.key, this))
+				this.expiry.cancel(false);
+
+			// The opponent gets the frames sent before the hang-up, then is hung up on.
+			if (this.opponent != null && !this.opponent.isClosed) {
+				pairCount.decrementAndGet();
+				this.opponent.channel.close();
+			}
+		}
+	}
+
+	/**
+	 * Run the relay on its own.
+	 * @param args Optional port number (defaults to 9890).
+	 */
+	public static void main(String[] args) {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+
+		RelayServer relay = new RelayServer(null, port);
+		relay.start();
+		System.out.println("Relaying games on port " + relay.getPort());
+
+		// The reactor thread is a daemon: keep the JVM alive.
+		try {
+			Thread.currentThread().join();
+		} catch (InterruptedException e) {
+			relay.stop();
+		}
+	}
+}
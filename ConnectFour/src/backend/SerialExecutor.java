@@ -0,0 +1,55 @@
+package backend;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs tasks on the BackgroundExecutor one at a time, in the order they were handed over. This is how the NIO
+ * connections call the front-end: not from the NioReactor, where a slow callback would hold up every other
+ * connection of the process, but without a message overtaking the one before either.
+ */
+public class SerialExecutor implements Executor {
+	private final Queue<Runnable> tasks;
+	private final AtomicBoolean scheduled; // Whether a background task is draining the queue
+
+	/**
+	 * Constructor: nothing to run yet.
+	 */
+	public SerialExecutor() {
+		this.tasks = new ConcurrentLinkedQueue<Runnable>();
+		this.scheduled = new AtomicBoolean();
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		this.tasks.offer(task);
+		schedule();
+	}
+
+	/**
+	 * Start draining the queue in the background, unless that is under way already.
+	 */
+	private void schedule() {
+		if (this.scheduled.compareAndSet(false, true))
+			BackgroundExecutor.getInstance().queue(this::drain);
+	}
+
+	/**
+	 * Run the tasks queued, in order. A task throwing is reported by the BackgroundExecutor; the ones after it run
+	 * all the same.
+	 */
+	private void drain() {
+		try {
+			Runnable task;
+			while ((task = this.tasks.poll()) != null)
+				task.run();
+		} finally {
+			this.scheduled.set(false);
+			// A task may have been queued after the last poll, finding the drain still under way.
+			if (!this.tasks.isEmpty())
+				schedule();
+		}
+	}
+}
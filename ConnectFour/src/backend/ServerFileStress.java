@@ -0,0 +1,219 @@
+package backend;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stress harness for the lock stripes of ServerTextFileIO: a fixed number of threads modify files for a while, over
+ * a storage that takes a set time per request (like a round trip to the server), spread over 1, 2, 4... distinct
+ * files. Each thread appends lines and removes every other one it appended. Prints the throughput for each number of files, and exits with a non-zero status if two modifications of
+ * a same file were ever in flight at once, if a line went missing, or if the throughput did not scale with the
+ * number of files (at least half of linear).
+ */
+public class ServerFileStress {
+	protected static final int DEFAULT_THREADS = 16;
+	protected static final int DEFAULT_LATENCY_MS = 2;
+	protected static final int DEFAULT_DURATION_MS = 2000;
+
+	/**
+	 * Run the stress test.
+	 * @param args Optional number of threads (defaults to 16, also the largest number of files), time per request in
+	 * milliseconds (defaults to 2) and duration of each round in milliseconds (defaults to 2000).
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_THREADS;
+		int latency = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_LATENCY_MS;
+		int duration = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_DURATION_MS;
+
+		SlowStorage storage = new SlowStorage(latency);
+		ServerTextFileIO.setStorage(storage);
+		ServerTextFileIO io = ServerTextFileIO.getInstance();
+
+		boolean failed = false;
+		double base = 0;
+		System.out.println(threads + " threads, " + latency + " ms per request, " + duration + " ms per round");
+
+		for (int files = 1; files <= threads; files *= 2) {
+			storage.reset();
+			AtomicLong operations = new AtomicLong();
+			AtomicLong expected = new AtomicLong();
+			long elapsed = run(io, threads, files, duration, operations, expected);
+
+			long lines = 0;
+			for (int f = 0; f < files; f++) {
+				String content = storage.read(fileName(f));
+				lines += content.isEmpty() ? 0 : content.split("\n").length;
+			}
+
+			double throughput = operations.get() / (elapsed / 1e9);
+			if (files == 1)
+				base = throughput;
+			double speedup = throughput / base;
+
+			System.out.printf("%2d files: %8.0f ops/s, speedup %5.2f, %d overlapping, %d lines missing%n", files, throughput, speedup,
+					storage.overlaps.get(), expected.get() - lines);
+			failed |= storage.overlaps.get() > 0 || lines != expected.get() || speedup < files / 2.0;
+		}
+
+		System.out.println(failed ? "FAILED" : "OK");
+		System.exit(failed ? 1 : 0);
+	}
+
+	/**
+	 * Helper function to run one round: each thread appends lines to one of the files for the duration, and removes
+	 * every other one right after the next.
+	 * @return Time the round took, in nanoseconds.
+	 */
+	private static long run(ServerTextFileIO io, int threads, int files, int duration, AtomicLong operations, AtomicLong expected)
+			throws InterruptedException {
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(threads);
+		long end = System.nanoTime() + duration * 1000000L;
+
+		for (int t = 0; t < threads; t++) {
+			final String fileName = fileName(t % files);
+			final int id = t;
+
+			new Thread() {
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; System.nanoTime() < end; i++) {
+							io.addLine(fileName, "thread" + id + "-" + i);
+							operations.incrementAndGet();
+							expected.incrementAndGet();
+							if (i % 2 == 1) {
+								io.removeLine(fileName, "thread" + id + "-" + (i - 1));
+								operations.incrementAndGet();
+								expected.decrementAndGet();
+							}
+						}
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+
+		long startTime = System.nanoTime();
+		start.countDown();
+		done.await();
+		return System.nanoTime() - startTime;
+	}
+
+	/**
+	 * @return Name of the file with an index, as the game would name it.
+	 */
+	private static String fileName(int index) {
+		return "10-0-" + index + "-1-" + (4711 * index + 17) + ".txt";
+	}
+
+	/**
+	 * In-memory storage that takes a set time per modification and checks that modifications of a file never overlap.
+	 */
+	private static class SlowStorage implements FileStorage {
+		private final int latency;
+		private final ConcurrentMap<String, StringBuilder> files = new ConcurrentHashMap<String, StringBuilder>();
+		private final ConcurrentMap<String, AtomicInteger> inFlight = new ConcurrentHashMap<String, AtomicInteger>();
+		private final AtomicLong overlaps = new AtomicLong();
+
+		private SlowStorage(int latency) {
+			this.latency = latency;
+		}
+
+		private void reset() {
+			this.files.clear();
+			this.inFlight.clear();
+			this.overlaps.set(0);
+		}
+
+		/**
+		 * Helper function to play a modification request: in flight for the latency, then applied.
+		 */
+		private void modify(String fileName, Runnable change) {
+			AtomicInteger count = this.inFlight.computeIfAbsent(fileName, name -> new AtomicInteger());
+			if (count.incrementAndGet() > 1)
+				this.overlaps.incrementAndGet();
+			try {
+				Thread.sleep(this.latency);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+			synchronized (this) {
+				change.run();
+			}
+			count.decrementAndGet();
+		}
+
+		private StringBuilder file(String fileName) {
+			return this.files.computeIfAbsent(fileName, name -> new StringBuilder());
+		}
+
+		@Override
+		public synchronized String read(String fileName) {
+			return file(fileName).toString();
+		}
+
+		@Override
+		public String awaitChange(String fileName, String known, long timeoutMs) {
+			return read(fileName);
+		}
+
+		@Override
+		public void cancelAwait(String fileName) {
+			// awaitChange() does not block.
+		}
+
+		@Override
+		public void write(String fileName, String data) {
+			modify(fileName, () -> {
+				StringBuilder file = file(fileName);
+				file.setLength(0);
+				file.append(data);
+			});
+		}
+
+		@Override
+		public void append(String fileName, String line) {
+			modify(fileName, () -> {
+				StringBuilder file = file(fileName);
+				if (file.length() > 0)
+					file.append('\n');
+				file.append(line);
+			});
+		}
+
+		@Override
+		public void removeLines(String fileName, String[] lines) {
+			Set<String> removed = new HashSet<String>(Arrays.asList(lines));
+			modify(fileName, () -> {
+				StringBuilder file = file(fileName);
+				StringBuilder kept = new StringBuilder();
+				for (String line : file.toString().split("\n")) {
+					if (!line.isEmpty() && !removed.contains(line))
+						kept.append(kept.length() > 0 ? "\n" : "").append(line);
+				}
+				file.setLength(0);
+				file.append(kept);
+			});
+		}
+
+		@Override
+		public void delete(String fileName) {
+			modify(fileName, () -> this.files.remove(fileName));
+		}
+
+		@Override
+		public boolean exists(String fileName) {
+			return this.files.containsKey(fileName);
+		}
+	}
+}
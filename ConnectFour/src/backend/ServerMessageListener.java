@@ -1,18 +1,29 @@
 package backend;
 
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
 import frontend.MiddleWare;
 
 /**
  * Server fallback message listener. This interfaces with the server listening file, i.e. whenever
  * the opponent posts a message, it will be through this file. This replaces the listening socket. The file
  * is created to be hosted on Fred Glozman's SOCS server. It is removed after use.
+ *
+ * By default the file is long polled: each request is held by the server until the opponent writes to the file,
+ * so a message arrives about one round trip after it is posted, and an idle game only costs one request every
+ * LONG_POLL_TIMEOUT_MS.
  */
-public class ServerMessageListener extends Thread {
+public class ServerMessageListener implements Runnable {
 	protected static final int FILE_READ_SLEEP_TIME_MS = 50;
+	protected static final long LONG_POLL_TIMEOUT_MS = 20000;
+	protected static final String LONG_POLL_PROPERTY = "connectfour.server.longpoll"; // Set to false to poll every 50 ms instead
 	
 	private MiddleWare mw;
 	private String listeningFileName;
 	private boolean isOpen;
+	private final boolean longPoll;
+	private volatile Future<?> task;
 	
 	/**
 	 * Constructor: sets up the file by creating it.
@@ -23,6 +34,7 @@ public class ServerMessageListener extends Thread {
 		this.listeningFileName = listeningFileName;
 		this.mw = mw;
 		this.isOpen = false;
+		this.longPoll = Boolean.parseBoolean(System.getProperty(LONG_POLL_PROPERTY, "true"));
 		
 		// Create file on server.
 		ServerTextFileIO file = ServerTextFileIO.getInstance();
@@ -47,6 +59,19 @@ public class ServerMessageListener extends Thread {
 		this.mw = mw;
 	}
 	
+	/**
+	 * Start listening in the background, on the BackgroundExecutor.
+	 */
+	public void start() {
+		try {
+			this.task = BackgroundExecutor.getInstance().submit(this);
+		} catch (RejectedExecutionException e) {
+			// No thread to listen on: as good as a lost connection.
+			close();
+			mw.transferFail();
+		}
+	}
+	
 	@Override
 	public void run() {
 		// Constantly ping the server file to check whether the opponent has posted anything to the file.
@@ -54,19 +79,34 @@ public class ServerMessageListener extends Thread {
 		// Stop when the file is closed via the close() method.
 
 		ServerTextFileIO file = ServerTextFileIO.getInstance();
+		FrameReceiver receiver = new FrameReceiver();
+		String known = null; // Contents last read, which the long poll waits to change
 		
 		try {
 			while (this.isOpen) {
-				String message = file.read(this.listeningFileName);
+				// Lines are appended with a trailing line break, which is not part of the message.
+				if (this.longPoll)
+					known = file.awaitChange(this.listeningFileName, known, LONG_POLL_TIMEOUT_MS);
+				else
+					known = file.read(this.listeningFileName);
+				String message = known.trim();
 				
 				if (message != null && message.length() > 0) {
-					file.removeLine(this.listeningFileName, message);
-					// Since reading from the server returns a string and message are integers by design, parse the integer.
-					mw.transferData(Integer.parseInt(message));
+					String[] lines = message.split("\n");
+					file.removeLines(this.listeningFileName, lines);
+					
+					// Each line holds the frames of one post, Base64-encoded, to be delivered in order. A line read
+					// again before its removal went through holds nothing new: the receiver drops repeated frames.
+					for (String line : lines)
+						for (Frame frame : FrameCodec.fromLine(line))
+							if (!receiver.receive(frame, mw))
+								return;
 				}
 				
 				// Ensure that the server isn't being pinged too often, which is excessive and may consume too many resources.
-				Thread.sleep(FILE_READ_SLEEP_TIME_MS);
+				// Long polling needs no pause: the server does the waiting.
+				if (!this.longPoll)
+					Thread.sleep(FILE_READ_SLEEP_TIME_MS);
 				
 			}
 		} catch (InterruptedException e) {
@@ -91,5 +131,17 @@ public class ServerMessageListener extends Thread {
 		}
 		
 		this.isOpen = false;
+		cancel();
+	}
+	
+	/**
+	 * Cancel the background task, interrupting it if it is blocked (a long poll has to be aborted on top of that).
+	 */
+	private void cancel() {
+		Future<?> task = this.task;
+		if (task != null) {
+			task.cancel(true);
+			ServerTextFileIO.getInstance().cancelAwait(this.listeningFileName);
+		}
 	}
 }
\ No newline at end of file
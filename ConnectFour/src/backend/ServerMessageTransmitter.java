@@ -1,7 +1,13 @@
 package backend;
 
-import java.util.ArrayDeque;
-import java.util.Queue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import frontend.MiddleWare;
 
@@ -9,16 +15,26 @@ import frontend.MiddleWare;
  * Server fallback message transmitter. This interfaces with the server transmitting file, i.e. whenever
  * the user needs to post a message, it will be through this file. The replaces the transmitting socket.
  * This file is created (and deleted) by the opponent upon server message listener setup.
+ *
+ * Whenever the file is free, everything queued up since the last post is sent in one line (the frames, see
+ * FrameCodec, Base64-encoded), so a burst of messages costs a single write instead of one per message.
+ * In between, the transmitter is parked on its queue: nothing runs until there is something to send.
  */
-public class ServerMessageTransmitter extends Thread {
+public class ServerMessageTransmitter implements Runnable {
 	protected static final int FILE_CHECK_TIME_LIMIT = 7; // Time in seconds
 	protected static final int FILE_CHECK_SLEEP_TIME_MS = 500; // Time inbetween checks in milliseconds
 	protected static final int FILE_WRITE_SLEEP_TIME_MS = 100;
+	protected static final int FLUSH_TIME_LIMIT_MS = 5000; // How long the queue gets to be posted after close()
+	private static final Frame[] CLOSE = new Frame[0]; // Queued by close(), after the last messages
 	
-	private MiddleWare mw;
-	private Queue<Integer> messageQueue;
+	private volatile MiddleWare mw;
+	private final BlockingQueue<Frame[]> messageQueue;
 	private String writingFileName;
-	private boolean isOpen;
+	private volatile boolean isOpen;
+	private volatile boolean isClosed;
+	private final boolean longPoll;
+	private volatile Future<?> task;
+	private final CompletableFuture<Boolean> flushed; // Outcome of close(): whether everything sent was posted
 	
 	/**
 	 * Constructor: initializes all fields and waits for the file to exists, which means the opponent is ready.
@@ -29,8 +45,10 @@ public class ServerMessageTransmitter extends Thread {
 		this.writingFileName = writingFileName;
 		this.mw = mw;
 		// Using a queue in case a message is pending upon reception of another.
-		this.messageQueue = new ArrayDeque<Integer>();
+		this.messageQueue = new LinkedBlockingQueue<Frame[]>();
+		this.flushed = new CompletableFuture<Boolean>();
 		this.isOpen = false;
+		this.longPoll = Boolean.parseBoolean(System.getProperty(ServerMessageListener.LONG_POLL_PROPERTY, "true"));
 		
 		int fileCheckTimeLimitMs = FILE_CHECK_TIME_LIMIT * 1000;
 		int timeElapsedMs = 0;
@@ -64,41 +82,76 @@ public class ServerMessageTransmitter extends Thread {
 		this.mw = mw;
 	}
 	
-
+	/**
+	 * Start transmitting in the background, on the BackgroundExecutor.
+	 */
+	public void start() {
+		try {
+			this.task = BackgroundExecutor.getInstance().submit(this);
+		} catch (RejectedExecutionException e) {
+			// No thread to post from: as good as a lost connection.
+			close();
+			error();
+		}
+	}
+	
 	@Override
 	public void run() {
-		// Constantly check the message queue, if it is not empty, check if the server is ready to take
-		// a new message, if it isn't wait and try again later, and if it is, then post the message to the
-		// server.
+		// Wait for messages to be queued, then for the server to be ready to take a new line, and post everything
+		// queued up by then in one line. Stop once close() has been called and everything queued before is posted.
 		 
 		ServerTextFileIO file = ServerTextFileIO.getInstance();
+		List<Frame[]> batch = new ArrayList<Frame[]>();
+		List<Frame> frames = new ArrayList<Frame>();
+		int seq = 1;
 		
 		try {
-			while (this.isOpen) {
-				synchronized (mw) {
-					boolean areElementsQueued = !this.messageQueue.isEmpty();
-					
-					// If opponent is gone.
-					if (!file.exists(this.writingFileName)) {
-						if (areElementsQueued)
-							throw new RuntimeException("Writing file no longer exists.");
-						close();
-					}
-					
-					if (areElementsQueued && file.read(this.writingFileName).length() == 0) {
-						int message = this.messageQueue.poll();
-						file.addLine(this.writingFileName, new Integer(message).toString());
-					}
+			boolean closing = false;
+			while (!closing) {
+				Frame[] first = this.messageQueue.take();
+				if (first == CLOSE)
+					break;
+				batch.add(first);
+				
+				awaitFreeFile(file);
+				
+				// Everything sent while waiting goes in the same line.
+				this.messageQueue.drainTo(batch);
+				for (Frame[] group : batch) {
+					closing |= group == CLOSE;
+					for (Frame frame : group)
+						frames.add(frame);
 				}
-				Thread.sleep(FILE_WRITE_SLEEP_TIME_MS);
+				batch.clear();
+				
+				file.addLine(this.writingFileName, FrameCodec.toLine(frames, seq));
+				seq += frames.size();
+				frames.clear();
 			}
+			this.flushed.complete(true);
 		} catch (InterruptedException e) {
 			// oh well...
 		} catch (Exception e) {
 			// If something goes wrong, clear the queue and notify the user.
 			error();
 		} finally {
-			close();
+			this.isOpen = false;
+			this.flushed.complete(false);
+		}
+	}
+	
+	/**
+	 * Wait for the opponent to consume the previous line. Reading fails if the file no longer exists, i.e. if
+	 * the opponent is gone.
+	 * @param file Server file interface.
+	 */
+	private void awaitFreeFile(ServerTextFileIO file) throws InterruptedException {
+		String contents;
+		while ((contents = file.read(this.writingFileName)).trim().length() > 0) {
+			if (this.longPoll)
+				file.awaitChange(this.writingFileName, contents, ServerMessageListener.LONG_POLL_TIMEOUT_MS);
+			else
+				Thread.sleep(FILE_WRITE_SLEEP_TIME_MS);
 		}
 	}
 	
@@ -107,21 +160,62 @@ public class ServerMessageTransmitter extends Thread {
 	 * @param message Message to be transmitted.
 	 */
 	public void send(int message) {
+		send(new int[] {message});
+	}
+	
+	/**
+	 * Queue up several messages at once. They are guaranteed to be posted together, in a single line.
+	 * @param messages Messages to be transmitted, in order.
+	 */
+	public void send(int[] messages) {
+		send(Frame.ofInts(messages));
+	}
+	
+	/**
+	 * Queue up several frames at once. They are guaranteed to be posted together, in a single line.
+	 * @param frames Frames to be transmitted, in order.
+	 */
+	public void send(Frame[] frames) {
 		// If there is no server to write to, error out.
-		if (!this.isOpen) {
+		if (!this.isOpen || this.isClosed) {
 			error();
 			return;
 		}
 		
-		this.messageQueue.offer(message);
+		this.messageQueue.offer(frames);
 	}
 	
 	/**
-	 * Finish emptying up the queue and stop the process.
+	 * Finish emptying up the queue and stop the process. Returns right away, so as not to hold up the caller
+	 * (typically the UI): the messages sent so far are posted in the background, for up to FLUSH_TIME_LIMIT_MS. A
+	 * caller who needs them posted waits on the future returned.
+	 * @return Future of the flush: true once every message sent before is posted, false if some were dropped
+	 * (failure, or time limit reached).
 	 */
-	public void close() {
-		while (!this.messageQueue.isEmpty());
-		this.isOpen = false;
+	public Future<Boolean> close() {
+		if (this.isClosed)
+			return this.flushed;
+		this.isClosed = true;
+		
+		Future<?> task = this.task;
+		if (task == null) {
+			this.isOpen = false;
+			this.flushed.complete(this.messageQueue.isEmpty());
+			return this.flushed;
+		}
+		
+		this.messageQueue.offer(CLOSE);
+		BackgroundExecutor.getInstance().execute(() -> {
+			try {
+				this.flushed.get(FLUSH_TIME_LIMIT_MS, TimeUnit.MILLISECONDS);
+			} catch (Exception e) {
+				// Could not finish posting: give up on what is left.
+				this.flushed.complete(false);
+				task.cancel(true);
+				ServerTextFileIO.getInstance().cancelAwait(this.writingFileName);
+			}
+		});
+		return this.flushed;
 	}
 	
 	/**
@@ -1,117 +1,122 @@
 package backend;
 
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.io.PrintStream;
-import java.net.URL;
-import java.net.URLConnection;
-import java.util.Scanner;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Singleton class that reads from and writes to a file hosted on a McGill server.
+ * Singleton class that reads from and writes to a file hosted on a McGill server. Where the files actually live
+ * is up to the underlying FileStorage: by default the SOCS server, or whatever the connectfour.server.url system
+ * property points to (e.g. a LocalFileServer).
+ *
+ * There is no global lock: every operation is a single request that the server applies atomically, so reads
+ * go straight through and modifications only serialize with other modifications of a file hashing to the same
+ * lock stripe. The player pool and a game's message files therefore never wait on each other.
  */
 public class ServerTextFileIO {	
 	private static final String SERVER_ROOT = "http://cs.mcgill.ca/";
 	private static final String SERVER_USER = "fglozm";
 
-	private static final String PHP_WRITE_FILE = "write.php";
-	private static final String PHP_DELETE_FILE = "delete.php";
-
 	private static final String BASE_URL = SERVER_ROOT + "~" + SERVER_USER + "/";
 	
-	private static final String PHP_WRITE_URL = BASE_URL + PHP_WRITE_FILE;
-	private static final String PHP_DELETE_URL = BASE_URL + PHP_DELETE_FILE;
+	public static final String SERVER_URL_PROPERTY = "connectfour.server.url";
+	protected static final int LOCK_STRIPES = 32; // Power of two
 
-	private static ServerTextFileIO instance;
+	private static volatile ServerTextFileIO instance;
+	
+	private volatile FileStorage storage;
+	private final ReentrantLock[] locks;
 
 	/**
 	 * Private constructor to ensure that users can't create 
 	 * multiple instances of this class. 
+	 * @param storage Backend in which the files are stored.
 	 */
-	private ServerTextFileIO() {}
+	private ServerTextFileIO(FileStorage storage) {
+		this.storage = storage;
+		this.locks = new ReentrantLock[LOCK_STRIPES];
+		for (int i = 0; i < LOCK_STRIPES; i++)
+			this.locks[i] = new ReentrantLock();
+	}
 	
 	/**
-	 * Send a PHP request to a specific script.
-	 * @param urlString URL as a string indicating where the PHP file is stored.
-	 * @param input Parameters to pass to the PHP script.
+	 * Lock stripe guarding the modifications of a file. Modifications of a same file keep the order in which
+	 * the threads of this client issued them.
+	 * @param fileName Name of the file.
+	 * @return Lock of the stripe the file belongs to.
 	 */
-	private static void phpRequest(String urlString, String input) {
-        PrintStream ps = null;
-        try {
-            URL url = new URL(urlString);
-            URLConnection con = url.openConnection();
-
-            con.setDoOutput(true);
-            ps = new PrintStream(con.getOutputStream());
-            ps.print(input);
-         
-            con.getInputStream();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        } finally {
-            if (ps != null) {
-                try {
-                    ps.close();
-                } catch (Exception e) {
-                    //oh well...
-                }
-            }
-        }
+	private ReentrantLock lockOf(String fileName) {
+		int hash = fileName.hashCode();
+		return this.locks[(hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1)];
 	}
 	
 	/**
 	 * @return the singleton instance of this class
 	 */
-	public static synchronized ServerTextFileIO getInstance() {
+	public static ServerTextFileIO getInstance() {
 		if (instance == null) {
-			instance = new ServerTextFileIO();
+			synchronized (ServerTextFileIO.class) {
+				if (instance == null) {
+					instance = new ServerTextFileIO(new HttpFileStorage(System.getProperty(SERVER_URL_PROPERTY, BASE_URL)));
+				}
+			}
 		}
 		
 		return instance;
 	}
 	
+	/**
+	 * Swap the storage backend, e.g. to run against a local stand-in server. Must be called before any
+	 * file is used.
+	 * @param storage Backend in which the files are stored.
+	 */
+	public static void setStorage(FileStorage storage) {
+		getInstance().storage = storage;
+	}
+	
 	/**
 	 * Delete a file from the server.
 	 * @param fileName Name of the file to delete.
 	 */
-	public synchronized void delete(String fileName) {
+	public void delete(String fileName) {
 	    //protect for accidentally deleting the player pool
 	    if (fileName.equals(PlayerPool.PLAYER_POOL_FILE_NAME)) {
 	        throw new RuntimeException("Error, you are not allowed to delete the player pool.");
 	    }
 	    
-	    phpRequest(PHP_DELETE_URL, fileName);
+	    ReentrantLock lock = lockOf(fileName);
+	    lock.lock();
+	    try {
+	        storage.delete(fileName);
+	    } finally {
+	        lock.unlock();
+	    }
 	}
 	
 	/**
 	 * Read the contents of a fine and return them.
 	 * @return The contents of the file as a string.
 	 */
-	public synchronized String read(String fileName) {
-		String contents = "";
-		
-		Scanner scanner = null;
-		try {
-		    String URL = BASE_URL + fileName; 
-			URL url = new URL(URL);
-			
-			scanner = new Scanner(url.openStream());
-			if(scanner.hasNext()) {
-				contents = scanner.useDelimiter("\\A").next();
-			}
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		} finally {
-			if(scanner != null) {
-				try {
-					scanner.close();
-				} catch(Exception e) {
-					//oh well...
-				}
-			}
-		}
+	public String read(String fileName) {
+		return storage.read(fileName);
+	}
 
-		return contents;
+	/**
+	 * Block until the contents of a file change (or the timeout expires) and return them. Much cheaper than
+	 * polling read() when the file is expected to stay unchanged for a while.
+	 * @param fileName Name of the file to watch.
+	 * @param known Contents the caller last saw, or null to return the contents right away.
+	 * @param timeoutMs Maximum time to block in milliseconds.
+	 * @return The contents of the file as a string.
+	 */
+	public String awaitChange(String fileName, String known, long timeoutMs) {
+		return storage.awaitChange(fileName, known, timeoutMs);
+	}
+
+	/**
+	 * Wake up the threads blocked in awaitChange() on a file, which then throw.
+	 * @param fileName Name of the watched file.
+	 */
+	public void cancelAwait(String fileName) {
+		storage.cancelAwait(fileName);
 	}
 
 	/**
@@ -119,40 +124,45 @@ public class ServerTextFileIO {
 	 * @param fileName Name of the file in which the overwrite is to be done.
 	 * @param data string to write to the file.
 	 */
-	private synchronized void write(String fileName, String data) {
-	    phpRequest(PHP_WRITE_URL, fileName + ":" + data);
+	private void write(String fileName, String data) {
+	    ReentrantLock lock = lockOf(fileName);
+	    lock.lock();
+	    try {
+	        storage.write(fileName, data);
+	    } finally {
+	        lock.unlock();
+	    }
 	}
 	
 	/**
 	 * Clear the contents of a file.
 	 * @param fileName Name of the file to clear.
 	 */
-	public synchronized void clear(String fileName) {
-	    phpRequest(PHP_WRITE_URL, fileName + ":" + "");
+	public void clear(String fileName) {
+	    write(fileName, "");
 	}
 	
 	/**
 	 * Create a file on the server.
 	 * @param fileName Name of the file to be created.
 	 */
-	public synchronized void createFile(String fileName) {
+	public void createFile(String fileName) {
 		write(fileName, new String());
 	}
 	
 	/**
-	 * Append a string to the end of the file.
+	 * Append a string to the end of the file. This is a single atomic request on the server, so concurrent
+	 * appends do not overwrite each other.
 	 * @param lineToAdd line to append to the file.
 	 */
-	public synchronized void addLine(String fileName, String lineToAdd) {
-		lineToAdd = lineToAdd.trim();
-		
-		String fileContents = read(fileName).trim();
-		if(fileContents == null || fileContents.equals("")) {
-			fileContents = lineToAdd;
-		} else {
-			fileContents += "\n" + lineToAdd;
+	public void addLine(String fileName, String lineToAdd) {
+		ReentrantLock lock = lockOf(fileName);
+		lock.lock();
+		try {
+			storage.append(fileName, lineToAdd.trim());
+		} finally {
+			lock.unlock();
 		}
-		write(fileName, fileContents);
 	}
 	
 	/**
@@ -160,32 +170,23 @@ public class ServerTextFileIO {
 	 * @param fileName Name of a file from which the line is to be removed.
 	 * @param lineToRemove Line to be matched.
 	 */
-	public synchronized void removeLine(String fileName, String lineToRemove) {
+	public void removeLine(String fileName, String lineToRemove) {
 		removeLines(fileName, new String[]{lineToRemove});
 	}
 	
 	/**
-	 * Remove all instances of each line in a specified set of lines in a file.
+	 * Remove all instances of each line in a specified set of lines in a file, in a single atomic request on the server.
 	 * @param fileName Name of the file from which the lines are the be removed.
 	 * @param linesToRemove Line to be matched.
 	 */
 	public void removeLines(String fileName, String[] linesToRemove) {
-		String fileContents = read(fileName);	
-		if(fileContents == null || fileContents.equals("")) {
-			return;
-		}
-		
-		String[] lines = fileContents.split("\n");
-		
-		fileContents = "";
-		for(String line : lines) {		
-			if(line != null && !line.equals("") && !arrayContainsLine(linesToRemove, line)) {
-				fileContents += line + "\n";
-			}
+		ReentrantLock lock = lockOf(fileName);
+		lock.lock();
+		try {
+			storage.removeLines(fileName, linesToRemove);
+		} finally {
+			lock.unlock();
 		}
-		fileContents.trim();
-					
-		write(fileName, fileContents);
 	}
 	
 	/**
@@ -194,27 +195,6 @@ public class ServerTextFileIO {
 	 * @return Boolean indicating whether the file exists.
 	 */
 	public boolean exists(String fileName) {
-		try {
-			read(fileName);
-			return true;
-		} catch (RuntimeException e) {
-			if (e.getCause() instanceof FileNotFoundException)
-				return false;
-			throw e;
-		}
-	}
-	
-	/**
-	 * Verify whether an array of strings contains a string.
-	 * @param array Array of strings in question.
-	 * @param target String to be matched.
-	 * @return Boolean indicating whether array contains target.
-	 */
-	private static boolean arrayContainsLine(String[] array, String target) {
-		for(String line : array)
-			if(line.equals(target))
-				return true;
-		
-		return false;
+		return storage.exists(fileName);
 	}
-}
\ No newline at end of file
+}
@@ -1,19 +1,21 @@
 package backend;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 import frontend.MiddleWare;
 /**
- * Handles socket message reception. All connections are TCP.
+ * Handles socket message reception. All connections are TCP, and messages arrive as frames (see FrameCodec).
  */
-public class SocketMessageListener extends Thread {
-	protected static final int SOCKET_READ_SLEEP_TIME_MS = 10;
-	
+public class SocketMessageListener implements Runnable {
 	private ServerSocket listenerSocket;
 	private MiddleWare mw;
+	private volatile Future<?> task;
 
 	/**
 	 * Constructor: initializes the listening socket at a given port.
@@ -38,27 +40,37 @@ public class SocketMessageListener extends Thread {
 		this.mw = mw;
 	}
 	
+	/**
+	 * Start listening in the background, on the BackgroundExecutor.
+	 */
+	public void start() {
+		try {
+			this.task = BackgroundExecutor.getInstance().submit(this);
+		} catch (RejectedExecutionException e) {
+			// No thread to listen on: as good as a lost connection.
+			close();
+			mw.transferFail();
+		}
+	}
+	
 	@Override
 	public void run() {
-		// Constantly check whether the opponent sent anything. If they did, notify the front-end via mw.
+		// Wait for the opponent to send anything, and notify the front-end via mw as soon as they do.
 		// Stop when the file is closed via the close() method.
 
+		FrameReceiver receiver = new FrameReceiver();
 		try {
 			Socket clientSocket = this.listenerSocket.accept();
-			InputStream in = clientSocket.getInputStream();
+			DataInputStream in = new DataInputStream(new BufferedInputStream(clientSocket.getInputStream()));
 			while (this.listenerSocket != null) {
-				int message = in.read();
+				Frame frame = FrameCodec.read(in);
 				
-				// -1 indicates transmitting end of the socket has been closed.
-				if (message == -1)
+				// null indicates transmitting end of the socket has been closed.
+				if (frame == null)
 					throw new RuntimeException("Opponent's transmission socket has been closed.");
-				mw.transferData(message);
-				
-				// Check very often, but not as often as the machine can.
-				Thread.sleep(SOCKET_READ_SLEEP_TIME_MS);
+				if (!receiver.receive(frame, mw))
+					break;
 			}
-		} catch (InterruptedException e) {
-			// oh well...
 		} catch (Exception e) {
 			// do nothing - i.e. close the listener.
 		} finally {
@@ -78,6 +90,17 @@ public class SocketMessageListener extends Thread {
 			}
 		} catch (IOException e) {
 			throw new RuntimeException(e);
+		} finally {
+			cancel();
 		}
 	}
+	
+	/**
+	 * Cancel the background task, interrupting it if it is blocked.
+	 */
+	private void cancel() {
+		Future<?> task = this.task;
+		if (task != null)
+			task.cancel(true);
+	}
 }
@@ -3,20 +3,33 @@ package backend;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.Socket;
-import java.util.ArrayDeque;
-import java.util.Queue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import frontend.MiddleWare;
 
 /**
- * Handles socket message transmission. All connections are TCP.
+ * Handles socket message transmission. All connections are TCP, and messages are sent as frames (see FrameCodec).
+ *
+ * The writer parks on a blocking queue until something is sent, then writes everything queued up by then in a
+ * single write: no polling, and no latency added on top of the network's.
  */
-public class SocketMessageTransmitter extends Thread {
-	protected static final int SOCKET_WRITE_SLEEP_TIME_MS = 10;
-	
+public class SocketMessageTransmitter implements Runnable {
+	protected static final int FLUSH_TIME_LIMIT_MS = 2000; // How long the queue gets to be written after close()
+	private static final Frame[] CLOSE = new Frame[0]; // Queued by close(), after the last messages
+
 	private Socket senderSocket;
-	private MiddleWare mw;
-	private Queue<Integer> messageQueue;
+	private volatile MiddleWare mw;
+	private final BlockingQueue<Frame[]> messageQueue;
+	private volatile Future<?> task;
+	private volatile boolean isClosed;
+	private final CompletableFuture<Boolean> flushed; // Outcome of close(): whether everything sent was written
 
 	/**
 	 * Constructor: initializes this transmitting socket at a given port and destined to a specific hostname.
@@ -26,16 +39,18 @@ public class SocketMessageTransmitter extends Thread {
 	 */
 	public SocketMessageTransmitter(String hostName, int port, MiddleWare mw) {
 		this.mw = mw;
-		this.messageQueue = new ArrayDeque<Integer>();
+		this.messageQueue = new LinkedBlockingQueue<Frame[]>();
+		this.flushed = new CompletableFuture<Boolean>();
 
 		this.senderSocket = null;
 		try {
 			this.senderSocket = new Socket(hostName, port);
+			this.senderSocket.setTcpNoDelay(true);
 		} catch (Exception e) {
 			mw.transferFail();
 		}
 	}
-	
+
 	/**
 	 * In case the view changes and the same message transmitter is needed, use this method.
 	 * @param mw New means of interfacing with the front-end.
@@ -44,64 +59,136 @@ public class SocketMessageTransmitter extends Thread {
 		this.mw = mw;
 	}
 
+	/**
+	 * Start transmitting in the background, on the BackgroundExecutor.
+	 */
+	public void start() {
+		try {
+			this.task = BackgroundExecutor.getInstance().submit(this);
+		} catch (RejectedExecutionException e) {
+			// No thread to write from: as good as a lost connection.
+			close();
+			error();
+		}
+	}
+
 	@Override
 	public void run() {
-		// Constantly check the message queue, if it is not empty, write it to the transmission stream and
-		// flush it. Then wait and try again. Stop when the transmission socket is closed.
-		
+		// Wait for messages to be queued, write all of them to the transmission stream and flush it.
+		// Stop once close() has been called and everything queued before has been written.
+
+		List<Frame[]> batch = new ArrayList<Frame[]>();
+		List<Frame> frames = new ArrayList<Frame>();
+		int seq = 1;
 		try {
 			OutputStream out = this.senderSocket.getOutputStream();
-			while (this.senderSocket != null) {
-				synchronized (mw) {
-					if (!this.messageQueue.isEmpty()) {
-						int message = this.messageQueue.poll();
-						out.write(message);
-						out.flush();
-					}					
+			boolean closing = false;
+			while (!closing) {
+				batch.add(this.messageQueue.take());
+				this.messageQueue.drainTo(batch);
+
+				for (Frame[] group : batch) {
+					closing |= group == CLOSE;
+					for (Frame frame : group)
+						frames.add(frame);
+				}
+				batch.clear();
+
+				if (!frames.isEmpty()) {
+					out.write(FrameCodec.encode(frames, seq));
+					out.flush();
+					seq += frames.size();
+					frames.clear();
 				}
-				
-				// Very often, but not too often.
-				Thread.sleep(SOCKET_WRITE_SLEEP_TIME_MS);
 			}
+			this.flushed.complete(true);
 		} catch (InterruptedException e) {
 			// oh well...
 		} catch (Exception e) {
 			error();
 		} finally {
 			// Always close the transmission socket.
-			close();
+			closeSocket();
+			this.flushed.complete(false);
 		}
 	}
-	
+
 	/**
 	 * Function to be called when a message is to be sent. Queues it up for transmission.
 	 * @param message Message to be transmitted.
 	 */
 	public void send(int message) {
+		send(new int[] {message});
+	}
+
+	/**
+	 * Queue up several messages at once. They are written together, in order.
+	 * @param messages Messages to be transmitted, in order.
+	 */
+	public void send(int[] messages) {
+		send(Frame.ofInts(messages));
+	}
+
+	/**
+	 * Queue up several frames at once. They are written together, in order.
+	 * @param frames Frames to be transmitted, in order.
+	 */
+	public void send(Frame[] frames) {
 		// If there is no socket to write to, error out.
-		if (this.senderSocket == null) {
+		if (this.senderSocket == null || this.isClosed) {
 			error();
 			return;
 		}
-		
-		this.messageQueue.offer(message);
+
+		this.messageQueue.offer(frames);
+	}
+
+	/**
+	 * Finish emptying up the queue and close the socket. Returns right away, so as not to hold up the caller
+	 * (typically the UI): the messages sent so far are written in the background, for up to FLUSH_TIME_LIMIT_MS. A
+	 * caller who needs them written waits on the future returned.
+	 * @return Future of the flush: true once every message sent before is written, false if some were dropped
+	 * (failure, or time limit reached).
+	 */
+	public Future<Boolean> close() {
+		if (this.isClosed)
+			return this.flushed;
+		this.isClosed = true;
+
+		Future<?> task = this.task;
+		if (task == null) {
+			closeSocket();
+			this.flushed.complete(this.messageQueue.isEmpty());
+			return this.flushed;
+		}
+
+		this.messageQueue.offer(CLOSE);
+		BackgroundExecutor.getInstance().execute(() -> {
+			try {
+				this.flushed.get(FLUSH_TIME_LIMIT_MS, TimeUnit.MILLISECONDS);
+			} catch (Exception e) {
+				// Could not finish writing: give up on what is left. Closing the socket also unblocks a write stuck
+				// on an opponent who does not read.
+				this.flushed.complete(false);
+				task.cancel(true);
+				closeSocket();
+			}
+		});
+		return this.flushed;
 	}
-	
+
 	/**
-	 * Finish emptying up the queue and close the socket.
+	 * Close the transmission socket, if not closed already.
 	 */
-	public void close() {
+	private synchronized void closeSocket() {
 		try {
-			if (this.senderSocket != null) {
-				while (!this.messageQueue.isEmpty());
+			if (this.senderSocket != null && !this.senderSocket.isClosed())
 				this.senderSocket.close();
-				this.senderSocket = null;
-			}
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
 	}
-	
+
 	/**
 	 * If something goes horribly wrong, clear the queue and notify the user.
 	 */
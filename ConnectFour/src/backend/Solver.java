@@ -0,0 +1,494 @@
+package backend;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Connect Four move search: negamax with alpha-beta pruning over the bitboards of GameBoard, trying the center
+ * columns (and the best move found so far) first, with a transposition table keyed by Zobrist hash. Searches
+ * deeper and deeper until the time is up or the game is solved, and plays the best move of the deepest search
+ * that finished.
+ *
+ * Scores are from the point of view of the player to move: WIN_SCORE minus the number of tokens on the board when
+ * the game is won (so faster wins score higher), the opposite for a loss, 0 for a draw, and a heuristic in between
+ * when the search stops short of the end.
+ *
+ * With more than one thread, the search is a lazy SMP: every thread searches the same position on its own
+ * ForkJoinPool worker, starting at staggered depths and with the root moves in a different order, and they only
+ * share the (lock-free) transposition table. Each thread mostly finds the results the others stored, so together
+ * they get deeper than one would. The thread count trades the strength of one game for the number of games a host
+ * can serve at once.
+ *
+ * With an OpeningBook, the positions it holds are looked up instead of searched, as long as their result is proven
+ * (a win or a loss, or searched to the end of the game): a heuristic result from a shallow offline search could be
+ * worse than what the search finds in the time it has.
+ *
+ * A solver searches one position at a time: use one per game.
+ */
+public class Solver {
+	protected static final int WIN_SCORE = 1000;
+	protected static final int MIN_WIN_SCORE = WIN_SCORE - GameBoard.COLUMNS * GameBoard.ROWS; // Below: heuristic
+	protected static final int DEFAULT_TABLE_BITS = 20; // 16 MB
+	protected static final int[] ORDER = {3, 2, 4, 1, 5, 0, 6}; // Center first: central tokens make more lines
+	public static final long NO_TIME_LIMIT = 0; // Search until solved
+
+	private static final int HEIGHT = GameBoard.HEIGHT;
+	private static final int CELLS = GameBoard.COLUMNS * GameBoard.ROWS;
+	private static final long BOTTOM_MASK = bottomMask();
+	private static final long BOARD_MASK = BOTTOM_MASK * ((1L << GameBoard.ROWS) - 1);
+	private static final long CENTER_MASK = ((1L << GameBoard.ROWS) - 1) << (3 * HEIGHT);
+	private static final int NODE_CHECK_INTERVAL = 4095; // Nodes between two looks at the clock, minus one
+
+	private final TranspositionTable table;
+	private final int threads;
+	private ForkJoinPool pool; // Created on the first search with helpers; guarded by this, like the two below
+	private boolean searching;
+	private boolean closed;
+	private OpeningBook book;
+	private volatile boolean stopped; // Set once the time is up or a thread solved the game
+	private long deadline; // System.nanoTime() at which to stop
+	private long nodes;
+	private int depth;
+	private int score;
+
+	/**
+	 * Constructor: single-threaded solver with a table of the default size.
+	 */
+	public Solver() {
+		this(1);
+	}
+
+	/**
+	 * Constructor: solver with a table of the default size.
+	 * @param threads Number of threads searching each position.
+	 */
+	public Solver(int threads) {
+		this(new TranspositionTable(DEFAULT_TABLE_BITS), threads);
+	}
+
+	/**
+	 * Constructor: sets up fields.
+	 * @param table Transposition table to use.
+	 * @param threads Number of threads searching each position.
+	 */
+	public Solver(TranspositionTable table, int threads) {
+		if (threads < 1)
+			throw new RuntimeException("Invalid number of search threads: " + threads);
+
+		this.table = table;
+		this.threads = threads;
+	}
+
+	/**
+	 * Find the best move for the player whose turn it is.
+	 * @param board Current grid; not modified.
+	 * @param timeLimit Time to search for, in milliseconds, or NO_TIME_LIMIT. The search stops earlier if the game is
+	 * solved.
+	 * @return Column to play.
+	 */
+	public int getBestMove(GameBoard board, long timeLimit) {
+		int type = board.getTypeToMove();
+		long me = board.getTokens(type);
+		long mask = board.getTokens(1) | board.getTokens(2);
+
+		if (this.book != null) {
+			int value = this.book.probe(board);
+			if (value != OpeningBook.NOT_FOUND && isProven(value, board.getMoveCount()) && canPlay(mask, OpeningBook.getMove(value))) {
+				this.nodes = 0;
+				this.depth = OpeningBook.getDepth(value);
+				this.score = OpeningBook.getScore(value);
+				return OpeningBook.getMove(value);
+			}
+		}
+
+		long hash = board.getCheckNumber();
+		int moves = board.getMoveCount();
+
+		this.deadline = timeLimit == NO_TIME_LIMIT ? Long.MAX_VALUE : System.nanoTime() + timeLimit * 1000000;
+		this.stopped = false;
+		this.table.nextGeneration();
+
+		// The helpers search on the pool while this thread runs the main search. Once closed, there are none.
+		ForkJoinPool pool;
+		synchronized (this) {
+			if (this.threads > 1 && this.pool == null && !this.closed)
+				this.pool = new ForkJoinPool(this.threads - 1);
+			pool = this.pool;
+			this.searching = true;
+		}
+
+		List<Search> searches = new ArrayList<Search>();
+		for (int i = 0; i < (pool != null ? this.threads : 1); i++)
+			searches.add(new Search(i));
+
+		try {
+			List<ForkJoinTask<?>> helpers = new ArrayList<ForkJoinTask<?>>();
+			for (Search helper : searches.subList(1, searches.size()))
+				helpers.add(pool.submit(() -> helper.iterate(me, mask, hash, moves, type)));
+			searches.get(0).iterate(me, mask, hash, moves, type);
+			this.stopped = true;
+			for (ForkJoinTask<?> helper : helpers)
+				helper.join();
+		} finally {
+			synchronized (this) {
+				this.searching = false;
+				// Closed during the search: release the helpers now that they are done.
+				if (this.closed)
+					shutdownPool();
+			}
+		}
+
+		// Play the move of a search that solved the game if any, else of the deepest one (the main one's if tied).
+		Search best = searches.get(0);
+		this.nodes = 0;
+		for (Search search : searches) {
+			this.nodes += search.nodes;
+			if (best.isSolved() || search.bestMove < 0)
+				continue;
+			if (search.isSolved() || search.depth > best.depth)
+				best = search;
+		}
+		this.depth = best.depth;
+		this.score = best.score;
+
+		if (best.bestMove >= 0)
+			return best.bestMove;
+
+		// Any legal move will do if there was no time to find a good one.
+		for (int column : ORDER) {
+			if (canPlay(mask, column))
+				return column;
+		}
+		throw new RuntimeException("No move left.");
+	}
+
+	/**
+	 * Whether a book result is exact: a win or a loss, or searched all the way to the end of the game.
+	 * @param value Packed result (see OpeningBook).
+	 * @param moves Number of tokens on the board.
+	 * @return True if so, false if the score is a heuristic.
+	 */
+	protected static boolean isProven(int value, int moves) {
+		return Math.abs(OpeningBook.getScore(value)) >= MIN_WIN_SCORE || OpeningBook.getDepth(value) >= CELLS - moves;
+	}
+
+	/**
+	 * Setter function for the opening book to look positions up in.
+	 * @param book Opening book, or null to search every position.
+	 */
+	public void setOpeningBook(OpeningBook book) {
+		this.book = book;
+	}
+
+	/**
+	 * Release the helper threads, if any, once the search in progress (if any) is over. Returns right away. The
+	 * solver can still be used afterwards, but searches on the calling thread only.
+	 */
+	public synchronized void close() {
+		this.closed = true;
+		if (!this.searching)
+			shutdownPool();
+	}
+
+	/**
+	 * Helper function to shut the pool of helper threads down. Must hold the lock on the solver.
+	 */
+	private void shutdownPool() {
+		if (this.pool != null) {
+			this.pool.shutdown();
+			this.pool = null;
+		}
+	}
+
+	/**
+	 * One thread's share of a search: its own iterative deepening, with its own root move order and node count.
+	 */
+	private class Search {
+		private final int id;
+		private final int[] order; // Root move order
+		private long nodes;
+		private int bestMove;
+		private int score;
+		private int depth;
+
+		/**
+		 * Constructor: sets up fields.
+		 * @param id Index of the thread; 0 is the main search.
+		 */
+		private Search(int id) {
+			this.id = id;
+			this.order = new int[ORDER.length];
+			for (int i = 0; i < ORDER.length; i++)
+				this.order[i] = ORDER[(i + id) % ORDER.length];
+			this.bestMove = -1;
+		}
+
+		/**
+		 * @return True if the last search completed proved who wins, false otherwise.
+		 */
+		private boolean isSolved() {
+			return this.bestMove >= 0 && Math.abs(this.score) >= MIN_WIN_SCORE;
+		}
+
+		/**
+		 * Search deeper and deeper until stopped or solved. Helpers start a bit deeper than the main search, so the
+		 * threads do not all search the same tree at the same time.
+		 */
+		private void iterate(long me, long mask, long hash, int moves, int type) {
+			for (int depth = 1 + (this.id + 1) / 2 % 2; depth <= CELLS - moves; depth++) {
+				int[] result = searchRoot(me, mask, hash, moves, type, depth);
+				if (Solver.this.stopped)
+					break;
+
+				this.bestMove = result[0];
+				this.score = result[1];
+				this.depth = depth;
+				if (isSolved())
+					break; // Solved: looking deeper will not change the outcome
+			}
+
+			// Whoever finishes first ends the search for all.
+			Solver.this.stopped = true;
+		}
+
+		/**
+		 * Search every move of the current position.
+		 * @return Best move and its score.
+		 */
+		private int[] searchRoot(long me, long mask, long hash, int moves, int type, int depth) {
+			int alpha = -WIN_SCORE;
+			int beta = WIN_SCORE;
+			int bestMove = -1;
+
+			long entry = Solver.this.table.probe(hash);
+			int first = entry != 0 ? TranspositionTable.getMove(entry) : TranspositionTable.NO_MOVE;
+
+			for (int i = -1; i < this.order.length; i++) {
+				int column = i < 0 ? first : this.order[i];
+				if (column == TranspositionTable.NO_MOVE || (i >= 0 && column == first) || !canPlay(mask, column))
+					continue;
+
+				long cell = (mask + bottom(column)) & columnMask(column);
+				int score;
+				if (GameBoard.hasFour(me | cell))
+					score = WIN_SCORE - (moves + 1);
+				else
+					score = -negamax(me ^ mask, mask | cell, hash ^ Zobrist.key(type, Long.numberOfTrailingZeros(cell)), moves + 1,
+							3 - type, depth - 1, -beta, -alpha);
+
+				if (Solver.this.stopped)
+					break;
+				if (score > alpha || bestMove < 0) {
+					alpha = Math.max(alpha, score);
+					bestMove = column;
+				}
+			}
+
+			if (!Solver.this.stopped)
+				Solver.this.table.store(hash, alpha, depth, TranspositionTable.EXACT, bestMove);
+			return new int[] {bestMove, alpha};
+		}
+
+		/**
+		 * Value of a position, up to a depth.
+		 * @param me Cells of the player to move.
+		 * @param mask Cells taken.
+		 * @param hash Zobrist hash of the position.
+		 * @param moves Number of tokens on the board.
+		 * @param type Color of the player to move.
+		 * @param depth Number of moves left to look at.
+		 * @param alpha Score the player to move is already sure of.
+		 * @param beta Score their opponent is already sure of.
+		 * @return Score, within [alpha, beta] unless the true score lies outside.
+		 */
+		private int negamax(long me, long mask, long hash, int moves, int type, int depth, int alpha, int beta) {
+			if ((++this.nodes & NODE_CHECK_INTERVAL) == 0 && System.nanoTime() > Solver.this.deadline)
+				Solver.this.stopped = true;
+			if (Solver.this.stopped)
+				return 0;
+
+			long possible = (mask + BOTTOM_MASK) & BOARD_MASK;
+
+			// Win right away if possible.
+			if ((winningCells(me, mask) & possible) != 0)
+				return WIN_SCORE - (moves + 1);
+			if (moves >= CELLS - 1)
+				return 0; // The last move cannot win: draw
+
+			// Block the opponent's immediate wins, and never play right under one of their winning cells.
+			long opponentWins = winningCells(me ^ mask, mask);
+			long forced = possible & opponentWins;
+			if (forced != 0) {
+				if ((forced & (forced - 1)) != 0)
+					return -(WIN_SCORE - (moves + 2)); // Two of them: cannot block both
+				possible = forced;
+			}
+			possible &= ~(opponentWins >>> 1);
+			if (possible == 0)
+				return -(WIN_SCORE - (moves + 2));
+
+			if (depth <= 0)
+				return evaluate(me, mask);
+
+			// Nobody can win faster than this from here.
+			int max = WIN_SCORE - (moves + 3);
+			if (beta > max) {
+				beta = max;
+				if (alpha >= beta)
+					return beta;
+			}
+
+			int alphaIn = alpha;
+			long entry = Solver.this.table.probe(hash);
+			int first = TranspositionTable.NO_MOVE;
+			if (entry != 0) {
+				first = TranspositionTable.getMove(entry);
+				if (TranspositionTable.getDepth(entry) >= depth) {
+					int stored = TranspositionTable.getScore(entry);
+					int bound = TranspositionTable.getBound(entry);
+					if (bound == TranspositionTable.EXACT)
+						return stored;
+					if (bound == TranspositionTable.LOWER)
+						alpha = Math.max(alpha, stored);
+					else
+						beta = Math.min(beta, stored);
+					if (alpha >= beta)
+						return stored;
+				}
+			}
+
+			int best = -WIN_SCORE;
+			int bestMove = TranspositionTable.NO_MOVE;
+			for (int i = -1; i < ORDER.length; i++) {
+				int column = i < 0 ? first : ORDER[i];
+				if (column == TranspositionTable.NO_MOVE || (i >= 0 && column == first))
+					continue;
+
+				long cell = possible & columnMask(column);
+				if (cell == 0)
+					continue;
+
+				int score = -negamax(me ^ mask, mask | cell, hash ^ Zobrist.key(type, Long.numberOfTrailingZeros(cell)), moves + 1,
+						3 - type, depth - 1, -beta, -alpha);
+				if (Solver.this.stopped)
+					return 0;
+
+				if (score > best) {
+					best = score;
+					bestMove = column;
+				}
+				if (score > alpha)
+					alpha = score;
+				if (alpha >= beta)
+					break;
+			}
+
+			int bound = best <= alphaIn ? TranspositionTable.UPPER : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+			Solver.this.table.store(hash, best, depth, bound, bestMove);
+			return best;
+		}
+	}
+
+	/**
+	 * Heuristic value of a position the search stops at: open three-in-a-rows, and tokens in the center column.
+	 * @param me Cells of the player to move.
+	 * @param mask Cells taken.
+	 * @return Score, well within (-MIN_WIN_SCORE, MIN_WIN_SCORE).
+	 */
+	private static int evaluate(long me, long mask) {
+		long opponent = me ^ mask;
+		int threats = Long.bitCount(winningCells(me, mask)) - Long.bitCount(winningCells(opponent, mask));
+		int center = Long.bitCount(me & CENTER_MASK) - Long.bitCount(opponent & CENTER_MASK);
+		return 8 * threats + 2 * center;
+	}
+
+	/**
+	 * Empty cells that would complete a four-in-a-row for a player.
+	 * @param tokens Cells of the player.
+	 * @param mask Cells taken.
+	 * @return Winning cells.
+	 */
+	protected static long winningCells(long tokens, long mask) {
+		// Vertical: only from below.
+		long cells = (tokens << 1) & (tokens << 2) & (tokens << 3);
+
+		for (int direction = HEIGHT - 1; direction <= HEIGHT + 1; direction++) {
+			// Horizontal and both diagonals: the missing cell can be anywhere on the line.
+			long pair = (tokens << direction) & (tokens << 2 * direction);
+			cells |= pair & (tokens << 3 * direction);
+			cells |= pair & (tokens >>> direction);
+			pair = (tokens >>> direction) & (tokens >>> 2 * direction);
+			cells |= pair & (tokens << direction);
+			cells |= pair & (tokens >>> 3 * direction);
+		}
+
+		return cells & (BOARD_MASK ^ mask);
+	}
+
+	/**
+	 * Whether a column is not full.
+	 * @param mask Cells taken.
+	 * @param column Column number.
+	 * @return True if a token can be dropped in the column, false otherwise.
+	 */
+	private static boolean canPlay(long mask, int column) {
+		return (mask & topMask(column)) == 0;
+	}
+
+	/**
+	 * @return Bottom cell of a column.
+	 */
+	private static long bottom(int column) {
+		return 1L << (column * HEIGHT);
+	}
+
+	/**
+	 * @return Top cell of a column.
+	 */
+	private static long topMask(int column) {
+		return 1L << (GameBoard.ROWS - 1 + column * HEIGHT);
+	}
+
+	/**
+	 * @return Cells of a column.
+	 */
+	private static long columnMask(int column) {
+		return ((1L << GameBoard.ROWS) - 1) << (column * HEIGHT);
+	}
+
+	/**
+	 * @return Bottom cell of every column.
+	 */
+	private static long bottomMask() {
+		long mask = 0;
+		for (int column = 0; column < GameBoard.COLUMNS; column++)
+			mask |= bottom(column);
+		return mask;
+	}
+
+	/**
+	 * Getter function for the number of positions looked at by the last search.
+	 * @return Number of nodes.
+	 */
+	public long getNodeCount() {
+		return this.nodes;
+	}
+
+	/**
+	 * Getter function for the depth the last search completed.
+	 * @return Depth, in moves.
+	 */
+	public int getDepth() {
+		return this.depth;
+	}
+
+	/**
+	 * Getter function for the score of the last search's move.
+	 * @return Score, from the point of view of the player who moved.
+	 */
+	public int getScore() {
+		return this.score;
+	}
+}
@@ -0,0 +1,80 @@
+package backend;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Scaling benchmark of the parallel Solver: searches the same positions for the same time with 1, 2, 4, 8 and 16
+ * threads, and reports the nodes searched per second and the depth reached for each thread count.
+ *
+ * Nodes per second only grow with the number of cores the machine actually has; past that, the threads share them.
+ */
+public class SolverBenchmark {
+	protected static final int[] THREADS = {1, 2, 4, 8, 16};
+	protected static final int DEFAULT_TIME_MS = 1000;
+	protected static final int POSITIONS = 8;
+	protected static final int OPENING_MOVES = 8; // Random moves played to set up each position
+	private static final long SEED = 42;
+
+	/**
+	 * Run the benchmark.
+	 * @param args Optional search time per position, in milliseconds (defaults to 1000).
+	 */
+	public static void main(String[] args) {
+		long time = args.length > 0 ? Long.parseLong(args[0]) : DEFAULT_TIME_MS;
+		List<GameBoard> positions = positions();
+
+		System.out.println(Runtime.getRuntime().availableProcessors() + " processors, " + positions.size() + " positions, " + time + " ms each");
+		System.out.println("threads    nodes/s   avg depth   speedup");
+
+		double base = 0;
+		for (int threads : THREADS) {
+			long nodes = 0;
+			long nanos = 0;
+			int depths = 0;
+
+			for (GameBoard board : positions) {
+				// Start each position from an empty table, so every thread count does the same work.
+				Solver solver = new Solver(threads);
+				try {
+					long start = System.nanoTime();
+					solver.getBestMove(board, time);
+					nanos += System.nanoTime() - start;
+					nodes += solver.getNodeCount();
+					depths += solver.getDepth();
+				} finally {
+					solver.close();
+				}
+			}
+
+			double rate = nodes * 1e9 / nanos;
+			if (base == 0)
+				base = rate;
+			System.out.printf("%7d %10.0f %11.1f %9.2f%n", threads, rate, (double) depths / positions.size(), rate / base);
+		}
+	}
+
+	/**
+	 * Helper function to set up the positions: random openings, from a fixed seed, that nobody has won yet.
+	 * @return Positions.
+	 */
+	private static List<GameBoard> positions() {
+		Random random = new Random(SEED);
+		List<GameBoard> positions = new ArrayList<GameBoard>();
+
+		while (positions.size() < POSITIONS) {
+			GameBoard board = new GameBoard();
+			for (int move = 0; move < OPENING_MOVES && board.getWinner() == GameBoard.NOBODY; move++) {
+				int column;
+				do {
+					column = random.nextInt(GameBoard.COLUMNS);
+				} while (!board.canPlay(column));
+				board.play(column, board.getTypeToMove());
+			}
+			if (board.getWinner() == GameBoard.NOBODY)
+				positions.add(board);
+		}
+		return positions;
+	}
+}
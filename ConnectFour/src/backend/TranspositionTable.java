@@ -0,0 +1,118 @@
+package backend;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size cache of search results, indexed by Zobrist hash. Each slot holds one position: a new result replaces
+ * the one in its slot if it was searched at least as deep, or if the old one is left over from an earlier search,
+ * so the table never grows and stale results make way for fresh ones.
+ *
+ * A result is packed into a long: score (16 bits), depth (8), bound (2), best move (4) and search generation (8).
+ *
+ * The table is shared by the threads of a parallel search without locks: a slot holds the result and the hash XOR
+ * the result, so a slot torn by two threads writing at once no longer matches its hash and reads as a miss.
+ */
+public class TranspositionTable {
+	protected static final int EXACT = 1; // The score is the position's value
+	protected static final int LOWER = 2; // The position is worth at least the score
+	protected static final int UPPER = 3; // The position is worth at most the score
+	protected static final int NO_MOVE = 15;
+
+	private final AtomicLongArray slots; // Hash XOR result, then result
+	private final int mask;
+	private volatile int generation;
+
+	/**
+	 * Constructor: empty table.
+	 * @param bits Log2 of the number of slots (16 bytes each).
+	 */
+	public TranspositionTable(int bits) {
+		if (bits < 1 || bits > 30)
+			throw new RuntimeException("Invalid transposition table size: 2^" + bits + " slots.");
+
+		this.slots = new AtomicLongArray(2 << bits);
+		this.mask = (1 << bits) - 1;
+		this.generation = 0;
+	}
+
+	/**
+	 * Mark the start of a new search: results of the previous ones are kept, but replaced first.
+	 */
+	public void nextGeneration() {
+		this.generation = (this.generation + 1) & 0xFF;
+	}
+
+	/**
+	 * Look a position up.
+	 * @param hash Hash of the position.
+	 * @return Packed result (see getScore() and co.), or 0 if the position is not in the table.
+	 */
+	public long probe(long hash) {
+		int slot = ((int) hash & this.mask) << 1;
+		long entry = this.slots.get(slot + 1);
+		return (this.slots.get(slot) ^ entry) == hash ? entry : 0;
+	}
+
+	/**
+	 * Store the result of a search, if it is worth more than the one in its slot.
+	 * @param hash Hash of the position.
+	 * @param score Score found.
+	 * @param depth Depth searched.
+	 * @param bound Whether the score is EXACT, a LOWER bound or an UPPER bound.
+	 * @param move Best move found, or NO_MOVE.
+	 */
+	public void store(long hash, int score, int depth, int bound, int move) {
+		int slot = ((int) hash & this.mask) << 1;
+		int generation = this.generation;
+		long old = this.slots.get(slot + 1);
+		if (old != 0 && (this.slots.get(slot) ^ old) != hash && getGeneration(old) == generation && getDepth(old) > depth)
+			return;
+
+		long entry = pack(score, depth, bound, move, generation);
+		this.slots.set(slot, hash ^ entry);
+		this.slots.set(slot + 1, entry);
+	}
+
+	/**
+	 * Pack a result into a long. Never 0, which stands for no result.
+	 * @return Packed result.
+	 */
+	protected static long pack(int score, int depth, int bound, int move, int generation) {
+		return (score & 0xFFFFL) | ((long) depth << 16) | ((long) bound << 24) | ((long) move << 26) | ((long) generation << 30);
+	}
+
+	/**
+	 * @return Score of a packed result.
+	 */
+	protected static int getScore(long entry) {
+		return (short) entry;
+	}
+
+	/**
+	 * @return Depth a packed result was searched at.
+	 */
+	protected static int getDepth(long entry) {
+		return (int) (entry >>> 16) & 0xFF;
+	}
+
+	/**
+	 * @return Bound type of a packed result (EXACT, LOWER or UPPER).
+	 */
+	protected static int getBound(long entry) {
+		return (int) (entry >>> 24) & 0x3;
+	}
+
+	/**
+	 * @return Best move of a packed result (NO_MOVE if none).
+	 */
+	protected static int getMove(long entry) {
+		return (int) (entry >>> 26) & 0xF;
+	}
+
+	/**
+	 * @return Search generation a packed result was stored in.
+	 */
+	protected static int getGeneration(long entry) {
+		return (int) (entry >>> 30) & 0xFF;
+	}
+}
@@ -0,0 +1,65 @@
+package backend;
+
+import java.util.Random;
+
+/**
+ * Randomized check of GameBoard's incremental win detection: plays random games to the end and, after every move,
+ * compares the winner found by looking at the lines through the last token with the one found by examining the
+ * whole grid. Exits with a non-zero status if they ever disagree.
+ */
+public class WinCheckEquivalence {
+	protected static final int DEFAULT_GAMES = 1000000;
+
+	/**
+	 * Run the check.
+	 * @param args Optional number of games (defaults to 1000000) and random seed (defaults to the current time).
+	 */
+	public static void main(String[] args) {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_GAMES;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+
+		Random random = new Random(seed);
+		long moves = 0;
+		long mismatches = 0;
+		int[] results = new int[4];
+
+		for (int game = 0; game < games; game++) {
+			GameBoard incremental = new GameBoard();
+			GameBoard full = new GameBoard();
+			int type = 1;
+
+			while (true) {
+				int column;
+				do {
+					column = random.nextInt(GameBoard.COLUMNS);
+				} while (!incremental.canPlay(column));
+
+				int row = incremental.getDropRow(column);
+				incremental.insert(column, row, type);
+				full.insert(column, row, type);
+				moves++;
+
+				int winner = incremental.computeWinner(column, row);
+				int expected = full.computeWinner();
+
+				if (winner != expected) {
+					if (mismatches++ == 0)
+						System.out.println("Mismatch in game " + game + ", move " + moves + ": " + winner + " instead of " + expected);
+					break;
+				}
+				if (winner != GameBoard.NOBODY) {
+					results[winner]++;
+					break;
+				}
+				type = 3 - type;
+			}
+		}
+
+		System.out.println(games + " games, " + moves + " moves (seed " + seed + ")");
+		System.out.println(results[1] + " won by 1, " + results[2] + " won by 2, " + results[GameBoard.DRAW] + " draws");
+		System.out.println(mismatches + " mismatches");
+
+		System.out.println(mismatches > 0 ? "FAILED" : "OK");
+		System.exit(mismatches > 0 ? 1 : 0);
+	}
+}
@@ -0,0 +1,53 @@
+package backend;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist keys of the grid cells: one random 64-bit key per cell and color. The hash of a grid is the XOR of the
+ * keys of its tokens, so placing (or removing) a token updates it with a single XOR.
+ *
+ * The keys are drawn from a fixed seed, so every process computes the same hash for the same grid.
+ */
+public class Zobrist {
+	private static final long SEED = 0x436F6E6E65637434L;
+	private static final long[][] KEYS = keys(); // Indexed by color - 1, then by bit (see GameBoard)
+
+	/**
+	 * Key of a token.
+	 * @param type Token color (1 or 2).
+	 * @param bit Bit of the cell in the bitboard layout of GameBoard.
+	 * @return Key.
+	 */
+	public static long key(int type, int bit) {
+		return KEYS[type - 1][bit];
+	}
+
+	/**
+	 * Hash of a whole grid, from scratch.
+	 * @param tokens1 Cells taken by color 1.
+	 * @param tokens2 Cells taken by color 2.
+	 * @return Hash.
+	 */
+	public static long hash(long tokens1, long tokens2) {
+		long hash = 0;
+		for (long cells = tokens1; cells != 0; cells &= cells - 1)
+			hash ^= KEYS[0][Long.numberOfTrailingZeros(cells)];
+		for (long cells = tokens2; cells != 0; cells &= cells - 1)
+			hash ^= KEYS[1][Long.numberOfTrailingZeros(cells)];
+		return hash;
+	}
+
+	/**
+	 * Helper function to draw the keys.
+	 * @return Keys, indexed by color - 1, then by bit.
+	 */
+	private static long[][] keys() {
+		SplittableRandom random = new SplittableRandom(SEED);
+		long[][] keys = new long[2][GameBoard.COLUMNS * GameBoard.HEIGHT];
+		for (long[] colorKeys : keys) {
+			for (int bit = 0; bit < colorKeys.length; bit++)
+				colorKeys[bit] = random.nextLong();
+		}
+		return keys;
+	}
+}
@@ -0,0 +1,213 @@
+package frontend;
+
+import java.io.File;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import backend.BackgroundExecutor;
+import backend.Frame;
+import backend.GameBoard;
+import backend.OpeningBook;
+import backend.Solver;
+
+/**
+ * Message handler for playing against the computer: instead of transmitting the player's messages, it plays the
+ * opponent's part itself. It keeps its own board, searches for its moves with a Solver, and answers like a remote
+ * opponent would: check value and move, acknowledgements, and an insult when it wins.
+ *
+ * Search time per move is set by the connectfour.ai.time system property (milliseconds), within the turn time, and
+ * the number of threads searching by connectfour.ai.threads. If connectfour.ai.book names an opening book file (see
+ * OpeningBookGenerator), the early moves it solved come from it; the book is mapped once and shared by all games.
+ */
+public class AiMessageHandler implements MessageHandler {
+	protected static final String TIME_PROPERTY = "connectfour.ai.time";
+	protected static final int DEFAULT_TIME_MS = 1000;
+	protected static final String THREADS_PROPERTY = "connectfour.ai.threads";
+	protected static final int DEFAULT_THREADS = 1;
+	protected static final String BOOK_PROPERTY = "connectfour.ai.book";
+	protected static final int MIN_REPLY_TIME_MS = 1000; // Lets the player's token land before the answer comes in
+	protected static final String[] INSULTS = {"Beep boop. You lose.", "Have you tried column 3?", "I saw that coming 40 moves ago.", "GG. Well, G."};
+
+	private static volatile OpeningBook book;
+
+	private final GameBoard board;
+	private final Solver solver;
+	private final int aiColor;
+	private final long thinkTime;
+	private volatile MiddleWare mw;
+	private volatile Future<?> task;
+	private boolean started;
+	private boolean isOver;
+	private boolean insultSent;
+	private volatile boolean isClosed;
+
+	/**
+	 * Constructor: sets up a new game.
+	 * @param coin Player's coin; the computer plays the other color.
+	 */
+	public AiMessageHandler(int coin) {
+		this.board = new GameBoard();
+		int threads = Math.max(1, Integer.getInteger(THREADS_PROPERTY, DEFAULT_THREADS));
+		this.solver = new Solver(threads);
+		this.solver.setOpeningBook(getOpeningBook());
+		this.aiColor = coin == 0 ? 2 : 1;
+
+		long time = Long.getLong(TIME_PROPERTY, DEFAULT_TIME_MS);
+		this.thinkTime = Math.max(1, Math.min(time, GameLogic.TURN_TIME * 1000L - MIN_REPLY_TIME_MS));
+	}
+
+	/**
+	 * Map the opening book named by the connectfour.ai.book system property, the first time around (lazy evaluation).
+	 * @return Opening book, or null if the property is not set.
+	 */
+	private static OpeningBook getOpeningBook() {
+		String file = System.getProperty(BOOK_PROPERTY);
+		if (file == null)
+			return null;
+
+		if (book == null) {
+			synchronized (AiMessageHandler.class) {
+				if (book == null) {
+					book = new OpeningBook(new File(file));
+				}
+			}
+		}
+
+		return book;
+	}
+
+	@Override
+	public void sendMessage(MiddleWare mw, int message) {
+		sendMessages(mw, new int[] {message});
+	}
+
+	@Override
+	public void sendMessages(MiddleWare mw, int[] messages) {
+		sendFrames(mw, Frame.ofInts(messages));
+	}
+
+	@Override
+	public synchronized void sendFrames(MiddleWare mw, Frame[] frames) {
+		for (Frame frame : frames) {
+			if (frame.isText()) {
+				// The player won and sent their insult: take it.
+				reply(() -> this.mw.transferData(ACK));
+			} else if (frame.isInt()) {
+				receive(frame.getInt());
+			}
+			// Check values are not checked: the player's board is the one being shown.
+		}
+	}
+
+	/**
+	 * React to a message from the player.
+	 * @param data Message.
+	 */
+	private void receive(int data) {
+		if (data >= 0 && data < 7) {
+			if (this.isOver || !this.board.canPlay(data))
+				return;
+			this.board.play(data, 3 - this.aiColor);
+			if (this.board.getWinner() != GameBoard.NOBODY)
+				this.isOver = true;
+			else
+				think();
+			return;
+		}
+
+		if (data == TIME_OUT_SYNC || data == GAME_OVER) {
+			this.isOver = true;
+			return;
+		}
+
+		if (data == NULL_SIGNAL) {
+			// The player won and did not bother with an insult.
+			reply(() -> this.mw.transferData(ACK));
+		}
+	}
+
+	@Override
+	public synchronized void listen(MiddleWare mw) {
+		MiddleWare previous = this.mw;
+		this.mw = mw;
+
+		// The computer moves first with color 1.
+		if (!this.started) {
+			this.started = true;
+			if (this.aiColor == 1)
+				think();
+			return;
+		}
+
+		// The player lost and moved on to the insult view: gloat.
+		if (this.isOver && mw != previous && this.board.getWinner() == this.aiColor && !this.insultSent) {
+			this.insultSent = true;
+			String insult = INSULTS[ThreadLocalRandom.current().nextInt(INSULTS.length)];
+			reply(() -> this.mw.transferText(insult));
+		}
+	}
+
+	/**
+	 * Search for a move in the background and play it, no sooner than MIN_REPLY_TIME_MS from now.
+	 */
+	private void think() {
+		this.task = BackgroundExecutor.getInstance().queue(() -> {
+			long start = System.currentTimeMillis();
+			int column = this.solver.getBestMove(this.board, this.thinkTime);
+
+			if (!pause(start))
+				return;
+			synchronized (this) {
+				if (this.isClosed || this.isOver)
+					return;
+				long check = this.board.getCheckNumber();
+				this.board.play(column, this.aiColor);
+				this.isOver = this.board.getWinner() != GameBoard.NOBODY;
+				this.mw.transferCheck(check);
+				this.mw.transferData(column);
+			}
+		});
+	}
+
+	/**
+	 * Answer the player in the background, no sooner than MIN_REPLY_TIME_MS from now, like a remote opponent would.
+	 * @param answer Calls to the front-end.
+	 */
+	private void reply(Runnable answer) {
+		this.task = BackgroundExecutor.getInstance().queue(() -> {
+			if (!pause(System.currentTimeMillis()))
+				return;
+			synchronized (this) {
+				if (!this.isClosed)
+					answer.run();
+			}
+		});
+	}
+
+	/**
+	 * Wait until MIN_REPLY_TIME_MS have passed since a point in time.
+	 * @param start Point in time, in milliseconds.
+	 * @return False if interrupted (i.e. closed), true otherwise.
+	 */
+	private boolean pause(long start) {
+		long left = start + MIN_REPLY_TIME_MS - System.currentTimeMillis();
+		if (left <= 0)
+			return true;
+
+		try {
+			Thread.sleep(left);
+			return true;
+		} catch (InterruptedException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public void close() {
+		this.isClosed = true;
+		Future<?> task = this.task;
+		if (task != null)
+			task.cancel(true);
+		this.solver.close();
+	}
+}
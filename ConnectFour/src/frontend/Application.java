@@ -1,5 +1,7 @@
 package frontend;
 
+import backend.HttpFileStorage;
+
 /**
  * Wrapper for the program's entry point. 
  */
@@ -10,6 +12,8 @@ public class Application {
 	 * @param args Default Java command-line arguments.
 	 */
 	public static void main(String[] args) {
+		HttpFileStorage.configureConnectionCache();
+		
 		// Initialize view by creating a window and launch the wait.
 		new WindowFrame().waitForPlayers();
 	}
@@ -1,5 +1,7 @@
 package frontend;
 
+import backend.GameBoard;
+
 /**
  * Game controller: Responsible for the gameplay logic.
  */
@@ -21,7 +23,8 @@ public class GameLogic implements ViewController, MiddleWare {
 	
 	private GameCanvas gc;
 	private WindowFrame f;
-	private int[][] positions;
+	private GameBoard board;
+	private int[][] positions; // View of the board for the canvas, kept in step with it
 	
 	private MessageHandler mh;
 	
@@ -36,7 +39,8 @@ public class GameLogic implements ViewController, MiddleWare {
 		this.gameWinner = 0;
 		this.userColor = userColor;
 		this.opponentColor = (userColor % 2) + 1; // 1 -> 2; 2 -> 1
-		this.positions = new int[7][6];
+		this.board = new GameBoard();
+		this.positions = this.board.getPositions();
 		this.f = f;
 		this.mh = NetworkConfiguration.getMessageHandler();
 		this.mh.listen(this);
@@ -81,8 +85,7 @@ public class GameLogic implements ViewController, MiddleWare {
 	 * @param column Column number (range: 0-6 incl.)
 	 */
 	public void placeToken(int column) {
-		this.mh.sendMessage(this, getCheckNumberHash());
-		this.mh.sendMessage(this, column);
+		this.mh.sendCheckedMessage(this, getCheckNumber(), column);
 		this.dropToken(column, this.userColor);
 	}
 	
@@ -100,21 +103,10 @@ public class GameLogic implements ViewController, MiddleWare {
 	 * @param type Color of the token as integer (1 or 2).
 	 */
 	public void dropToken(int column, int type) {
-		
-		if (this.positions[column][0] != 0)
-			throw new RuntimeException("Token being placed in full column.");
-		
 		if (type != 1 && type != 2)
 			throw new RuntimeException("Invalid token type.");
 		
-		int row = 5;
-		
-		for (int j = 1; j < 6; j++) {
-			if (this.positions[column][j] != 0) {
-				row = j - 1;
-				break;
-			}
-		}
+		int row = this.board.getDropRow(column);
 		
 		this.gc.drop(column, row, type);
 	}
@@ -126,10 +118,11 @@ public class GameLogic implements ViewController, MiddleWare {
 	 * @param type Token color.
 	 */
 	public void insertToken(int column, int row, int type) {
+		this.board.insert(column, row, type);
 		this.positions[column][row] = type;
 		
 		resetTimer();
-		computeWinner();
+		this.gameWinner = this.board.computeWinner(column, row);
 		this.userTurn = !this.userTurn;
 	}
 	
@@ -137,135 +130,15 @@ public class GameLogic implements ViewController, MiddleWare {
 	 * Update the gameWinner variable (0 is nobody and 3 is a draw). Computed every update.
 	 */
 	public void computeWinner() {
-		if (checkDiagonalWinner(0, 5, 1, -1) > 0) return;
-		if (checkDiagonalWinner(6, 0, -1, 1) > 0) return;
-		if (checkDiagonalWinner(6, 5, -1, -1) > 0) return;
-		if (checkDiagonalWinner(0, 0, 1, 1) > 0) return;
-		if (checkStraightWinner() > 0) return;
-		if (boardIsFull()) return;
-		this.gameWinner = 0;
-	}
-	
-	/**
-	 * Helper function to check if a vertical connect 4 is achieved.
-	 * @return Color of user who achieved it (0 if no one).
-	 */
-	private int checkStraightWinner() {
-		for (int i = 0; i < 7; i++) {
-			int previousVertical = -1;
-			int sameVertical = 1;
-			for (int j = 0; j < 6; j++) {
-				int current = this.positions[i][j];
-				if (current == 0) {
-					previousVertical = -1;
-					continue;
-				}
-				// check horizontally
-				if (i > 2 	&& current == this.positions[i - 1][j]
-						 	&& current == this.positions[i - 2][j]
-						 	&& current == this.positions[i - 3][j]) {
-					this.gameWinner = current;
-					return current;
-				}
-				if (current == previousVertical) {
-					sameVertical++;
-				}
-				else {
-					sameVertical = 1;
-				}
-				if (sameVertical == 4) {
-					this.gameWinner = current;
-					return current;
-				}
-				previousVertical = current;
-			}
-		}
-		return 0;
-	}
-	
-	/**
-	 * Helper function to check if a vertical connect 4 is achieved.
-	 * @param startRow Row where the diagonal begins.
-	 * @param startColumn Column where the diagonal begins.
-	 * @param rowIncrement Whether the diagonal points left or right.
-	 * @param colIncrement Whether the diagonal points up or down.
-	 * @return Color of user who achieved it (0 if no one).
-	 */
-	private int checkDiagonalWinner(int startRow, int startColumn, int rowIncrement, int colIncrement) {
-		for (int i = startRow; (i < 7 && i > -1); i+= rowIncrement) {
-			int currRow = i;
-			int count = 1;
-			int previous = -1;
-			for (int j = startColumn; (j < 6 && j > -1) && (currRow > -1 && currRow < 7); j+= colIncrement) {
-				int current = this.positions[currRow][j];
-				if (current == 0) {
-					previous = -1;
-					continue;
-				}
-				if (current == previous)
-					count++;
-				else
-					count = 1;
-				if (count == 4) {
-					this.gameWinner = current;
-					return current;
-				}
-				previous = current;
-				currRow += rowIncrement;
-			}
-		}
-		return 0;
+		this.gameWinner = this.board.computeWinner();
 	}
 	
 	/**
-	 * Check whether the grid is completely populated with tokens. If there are no winners and that is a case, there is a draw.
-	 * @return True if the grid if full, false otherwise.
-	 */
-	private boolean boardIsFull() {
-		for (int i = 0; i < 7; i++) {
-			if (this.positions[i][0] == 0)
-				return false;
-		}
-		this.gameWinner = 3;
-		return true;
-	}
-	
-	/**
-	 * Generates a number unique to the current state of the board.
+	 * Generates a number unique to the current state of the board: its Zobrist hash.
 	 * @return Board value.
 	 */
-	private int getCheckNumber() {
-		int NUMBER_OF_ROW = 6;
-		int NUMBER_OF_COL = 7;
-		String binaryCheck = "";
-		int[] columnTokenCount = new int[NUMBER_OF_COL];
-		for (int col = 0; col < NUMBER_OF_COL; col++) {
-			for (int row = 0; row < NUMBER_OF_ROW; row++) {
-				if (this.positions[col][row] != 0)
-					columnTokenCount[col]++;
-			}
-		}
-		for (int tokenCount : columnTokenCount) {
-			if (tokenCount % 2 == 1)
-				binaryCheck = binaryCheck.concat("1"); // odd
-			else
-				binaryCheck = binaryCheck.concat("0"); // even
-		}
-		return binaryToInteger(binaryCheck);
-	}
-	
-	/**
-	 * Takes a binary sequence as a string and converts it into an integer
-	 * 
-	 * @return Value as an integer
-	 */
-	public static int binaryToInteger(String binary) {
-		char[] numbers = binary.toCharArray();
-		int result = 0;
-		for (int i = numbers.length - 1; i >= 0; i--)
-			if (numbers[i] == '1')
-				result += Math.pow(2, (numbers.length - i - 1));
-		return result;
+	private long getCheckNumber() {
+		return this.board.getCheckNumber();
 	}
 	
 	/**
@@ -276,7 +149,7 @@ public class GameLogic implements ViewController, MiddleWare {
 	 * @return Hashed check value.
 	 */
 	private int getCheckNumberHash() {
-		return MessageHandler.CHECK_NUMBER_LOW + (getCheckNumber() % (256 - MessageHandler.CHECK_NUMBER_LOW));
+		return MessageHandler.hashCheckNumber(getCheckNumber());
 	}
 
 	/**
@@ -385,6 +258,12 @@ public class GameLogic implements ViewController, MiddleWare {
 		}
 	}
 	
+	@Override
+	public void transferCheck(long check) {
+		if (check != getCheckNumber())
+			this.f.displayCriticalError(ErrorLogic.CHECK_FAIL);
+	}
+	
 	@Override
 	public void transferFail() {
 		this.f.displayCriticalError(ErrorLogic.TRANSFER_FAIL);
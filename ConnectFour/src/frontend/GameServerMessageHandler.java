@@ -0,0 +1,82 @@
+package frontend;
+
+import backend.Frame;
+import backend.GameServerConnection;
+
+/**
+ * Message handler for the game server scenario: both players connect to a GameServer, which hosts their game and
+ * relays their messages, instead of connecting to each other.
+ */
+public class GameServerMessageHandler implements MessageHandler {
+
+	private GameServerConnection connection;
+
+	private String address;
+	private int coin;
+	private String key;
+
+	/**
+	 * Constructor: sets up fields.
+	 * @param address Address of the game server as host:port.
+	 * @param coin Player's coin.
+	 * @param key Session key, the same for both players.
+	 */
+	public GameServerMessageHandler(String address, int coin, String key) {
+		this.address = address;
+		this.coin = coin;
+		this.key = key;
+	}
+
+	@Override
+	public void sendMessage(MiddleWare mw, int message) {
+		sendMessages(mw, new int[] {message});
+	}
+
+	@Override
+	public void sendMessages(MiddleWare mw, int[] messages) {
+		sendFrames(mw, Frame.ofInts(messages));
+	}
+
+	@Override
+	public void sendFrames(MiddleWare mw, Frame[] frames) {
+		connect(mw);
+		connection.send(frames);
+	}
+
+	@Override
+	public void listen(MiddleWare mw) {
+		connect(mw);
+	}
+
+	/**
+	 * If no connection to the server is established, establish it; otherwise, link it to the front-end component.
+	 * @param mw Front-end component.
+	 */
+	private void connect(MiddleWare mw) {
+		if (connection == null) {
+			connection = newConnection(address, coin, key, mw);
+		} else {
+			connection.setMiddleWare(mw);
+		}
+	}
+
+	/**
+	 * Connect to the server and join the game.
+	 * @param address Address of the game server as host:port.
+	 * @param coin Player's coin.
+	 * @param key Session key.
+	 * @param mw Front-end component.
+	 * @return Connection.
+	 */
+	protected GameServerConnection newConnection(String address, int coin, String key, MiddleWare mw) {
+		return new GameServerConnection(address, coin, key, mw);
+	}
+
+	@Override
+	public void close() {
+		if (connection != null) {
+			connection.close();
+			connection = null;
+		}
+	}
+}
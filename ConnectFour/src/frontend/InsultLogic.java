@@ -120,7 +120,7 @@ public class InsultLogic implements ViewController, MiddleWare {
 	}
 	
 	/**
-	 * Send the insult byte-by-byte (character-by-character).
+	 * Send the insult, all at once.
 	 */
 	public void sendInsult() {
 		this.ic.stop();
@@ -130,10 +130,7 @@ public class InsultLogic implements ViewController, MiddleWare {
 			return;
 		}
 		
-		for (int sendingIndex = 0; sendingIndex < insult.length(); sendingIndex++)
-			this.mh.sendMessage(this, insult.charAt(sendingIndex));
-		
-		this.mh.sendMessage(this, MessageHandler.END_OF_STRING);		
+		this.mh.sendText(this, insult);
 	}
 	
 	/**
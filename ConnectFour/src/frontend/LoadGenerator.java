@@ -0,0 +1,589 @@
+package frontend;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import backend.BackgroundExecutor;
+import backend.GameBoard;
+import backend.HttpFileStorage;
+import backend.LocalFileServer;
+import backend.MatchmakingServer;
+import backend.Player;
+import backend.PlayerPool;
+import backend.ServerTextFileIO;
+import backend.Solver;
+import backend.TranspositionTable;
+
+/**
+ * Headless load generator: simulated players go through the life cycle of the game over and over, without any
+ * window. Each one gets in a player pool of its own (see PlayerPool), plays the game it is matched into through the
+ * message handler the game would use (see NetworkConfiguration), exchanges the insult, and gets back in the pool.
+ * The game and insult controllers are stand-ins for GameLogic and InsultLogic that send and react to the same
+ * messages, minus the views, the animations and the waiting for a human.
+ *
+ * Every simulated player has an address in a subnet of its own, so games go through the server files, or through
+ * the game server if the connectfour.gameserver system property is set, or through a relay if connectfour.relay is
+ * (set it to local for one in this process). Unless the connectfour.server.url system
+ * property says otherwise, the files are served by a LocalFileServer started here. Players meet through the pool
+ * file, or through a MatchmakingServer, started here too, in matchmaker mode.
+ *
+ * Prints progress every few seconds, then the number of matches per minute, the latency of the moves (from being
+ * sent to being received by the opponent) and the errors by kind.
+ */
+public class LoadGenerator {
+	protected static final int DEFAULT_PLAYERS = 100;
+	protected static final int DEFAULT_DURATION_S = 60;
+	protected static final String MATCHMAKER_MODE = "matchmaker";
+	protected static final String AI_MOVES = "ai";
+	protected static final int AI_TIME_MS = 20;
+	protected static final int AI_TABLE_BITS = 16; // 1 MB per game in progress
+	protected static final int NULL_INSULT_PERCENT = 25; // Winners who do not bother with an insult
+	protected static final long TURN_TIMEOUT_MS = (GameLogic.TURN_TIME + GameLogic.LEEWAY_TIME) * 1000L;
+	protected static final long INSULT_TIMEOUT_MS = (InsultLogic.INSULT_TIME_LIMIT + InsultLogic.LEEWAY_TIME) * 1000L;
+	protected static final long REPORT_INTERVAL_MS = 5000;
+	protected static final long DRAIN_TIME_MS = TURN_TIMEOUT_MS; // How long games in progress get to finish at the end
+	protected static final String[] INSULTS = {"Is that all you got?", "My cat plays better.", "gg ez"};
+
+	private final boolean aiMoves;
+	private final List<SimulatedPlayer> players;
+	private final Map<String, Long> sentMoves; // Time each move in flight was sent at, by player and move number
+	private final long[] latencies; // Nanoseconds, up to its capacity: see recordLatency()
+	private int latencyCount;
+	private final Map<String, AtomicLong> errors;
+	private final AtomicLong games;
+	private final AtomicLong matches;
+	private final AtomicLong insults;
+	private volatile boolean stopping;
+
+	/**
+	 * Constructor: sets up the simulated players, without starting them.
+	 * @param playerCount Number of simulated players.
+	 * @param aiMoves Whether players search for their moves (true) or play at random (false).
+	 */
+	public LoadGenerator(int playerCount, boolean aiMoves) {
+		this.aiMoves = aiMoves;
+		this.players = new ArrayList<SimulatedPlayer>();
+		this.sentMoves = new ConcurrentHashMap<String, Long>();
+		this.latencies = new long[1 << 20];
+		this.errors = new ConcurrentHashMap<String, AtomicLong>();
+		this.games = new AtomicLong();
+		this.matches = new AtomicLong();
+		this.insults = new AtomicLong();
+
+		for (int i = 0; i < playerCount; i++)
+			this.players.add(new SimulatedPlayer("10." + (i >> 8 & 0xFF) + "." + (i & 0xFF) + ".1/24"));
+	}
+
+	/**
+	 * Run the players for a while, then let the games in progress finish and print the results.
+	 * @param duration Time during which players keep getting in the pool, in milliseconds.
+	 */
+	public void run(long duration) {
+		long start = System.currentTimeMillis();
+		for (SimulatedPlayer player : this.players)
+			player.join();
+
+		long end = start + duration;
+		long now;
+		while ((now = System.currentTimeMillis()) < end) {
+			sleep(Math.min(REPORT_INTERVAL_MS, end - now));
+			checkTimeouts();
+			System.out.println(progress(start));
+		}
+
+		// Stop matching; whoever is still playing gets to finish their game.
+		this.stopping = true;
+		for (SimulatedPlayer player : this.players)
+			player.leave();
+		long drainEnd = System.currentTimeMillis() + DRAIN_TIME_MS;
+		while (busyCount() > 0 && System.currentTimeMillis() < drainEnd) {
+			sleep(REPORT_INTERVAL_MS / 5);
+			checkTimeouts();
+		}
+		long elapsed = System.currentTimeMillis() - start;
+
+		System.out.println(progress(start));
+		System.out.println(report(elapsed));
+	}
+
+	/**
+	 * Helper function to give up on the players that have been waiting for their opponent for too long.
+	 */
+	private void checkTimeouts() {
+		long now = System.currentTimeMillis();
+		for (SimulatedPlayer player : this.players)
+			player.checkTimeout(now);
+	}
+
+	/**
+	 * Helper function to count the players in the middle of a game or insult.
+	 * @return Number of players.
+	 */
+	private int busyCount() {
+		int count = 0;
+		for (SimulatedPlayer player : this.players) {
+			if (player.isBusy())
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Helper function to describe the progress so far, in a line.
+	 * @param start Point in time the run started, in milliseconds.
+	 * @return Description.
+	 */
+	private String progress(long start) {
+		return String.format("%6.1f s: %d games, %d matches, %d insults, %d playing, %d errors", (System.currentTimeMillis() - start) / 1000.0,
+				this.games.get(), this.matches.get(), this.insults.get(), busyCount(), errorCount());
+	}
+
+	/**
+	 * Helper function to describe the results.
+	 * @param elapsed Length of the run, in milliseconds.
+	 * @return Description.
+	 */
+	private String report(long elapsed) {
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("%d players, %.1f s: %d matches (%.1f per minute), %d insults delivered%n", this.players.size(), elapsed / 1000.0,
+				this.matches.get(), this.matches.get() * 60000.0 / elapsed, this.insults.get()));
+
+		long[] sorted;
+		synchronized (this.latencies) {
+			sorted = Arrays.copyOf(this.latencies, this.latencyCount);
+		}
+		Arrays.sort(sorted);
+		report.append(String.format("Move latency (%d moves): p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, p99.9 %.1f ms, max %.1f ms%n", sorted.length,
+				percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99), percentile(sorted, 99.9), percentile(sorted, 100)));
+
+		long games = Math.max(1, this.games.get());
+		report.append(String.format("Direct socket games: %.1f%%, relayed: %.1f%%%n", NetworkConfiguration.getDirectFraction() * 100,
+				NetworkConfiguration.getRelayFraction() * 100));
+		report.append(String.format("Errors: %d (%.2f%% of %d game starts)", errorCount(), errorCount() * 100.0 / games, this.games.get()));
+		for (Map.Entry<String, AtomicLong> error : this.errors.entrySet())
+			report.append(String.format("%n  %-12s %d", error.getKey(), error.getValue().get()));
+		return report.toString();
+	}
+
+	/**
+	 * Helper function to find a percentile.
+	 * @param sorted Values, in ascending order, in nanoseconds.
+	 * @param percent Percentile.
+	 * @return Value at the percentile, in milliseconds (0 if there are no values).
+	 */
+	private static double percentile(long[] sorted, double percent) {
+		if (sorted.length == 0)
+			return 0;
+		int index = (int) Math.ceil(percent / 100 * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+	}
+
+	/**
+	 * Keep the latency of a move; past the capacity of the array, later moves are not kept.
+	 * @param nanos Latency, in nanoseconds.
+	 */
+	private void recordLatency(long nanos) {
+		synchronized (this.latencies) {
+			if (this.latencyCount < this.latencies.length)
+				this.latencies[this.latencyCount++] = nanos;
+		}
+	}
+
+	/**
+	 * Count an error.
+	 * @param kind Kind of error.
+	 */
+	private void recordError(String kind) {
+		AtomicLong count = this.errors.get(kind);
+		if (count == null) {
+			this.errors.putIfAbsent(kind, new AtomicLong());
+			count = this.errors.get(kind);
+		}
+		count.incrementAndGet();
+	}
+
+	/**
+	 * @return Total number of errors.
+	 */
+	private long errorCount() {
+		long count = 0;
+		for (AtomicLong error : this.errors.values())
+			count += error.get();
+		return count;
+	}
+
+	/**
+	 * Sleep, giving up quietly if interrupted.
+	 * @param millis Time to sleep, in milliseconds.
+	 */
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * A simulated player: waits in its pool, plays, insults or gets insulted, and waits again. Everything happens on
+	 * the threads of the pool and of the message handlers, in callbacks synchronized on the player.
+	 */
+	private class SimulatedPlayer implements PoolObserver {
+		private final PlayerPool pool;
+		private volatile MiddleWare phase; // Controller of the current game or insult, null while waiting
+		private MessageHandler mh;
+		private volatile long deadline; // Time by which the opponent must have answered, in milliseconds
+		private boolean waiting;
+
+		/**
+		 * Constructor: sets up fields.
+		 * @param address Address of the player, in the form a.b.c.d/m.
+		 */
+		private SimulatedPlayer(String address) {
+			this.pool = new PlayerPool(address);
+		}
+
+		/**
+		 * Get in the pool, unless the run is over.
+		 */
+		private synchronized void join() {
+			this.phase = null;
+			this.mh = null;
+			if (LoadGenerator.this.stopping)
+				return;
+
+			this.waiting = true;
+			this.pool.addSelf(this);
+		}
+
+		/**
+		 * Leave the pool if still waiting in it.
+		 */
+		private synchronized void leave() {
+			if (this.waiting) {
+				this.waiting = false;
+				this.pool.removeSelf();
+			}
+		}
+
+		@Override
+		public synchronized void startGame(Player me, Player opponent) {
+			if (!this.waiting)
+				return;
+			this.waiting = false;
+
+			LoadGenerator.this.games.incrementAndGet();
+			this.mh = NetworkConfiguration.newMessageHandler(me, opponent);
+			Game game = new Game(me, opponent);
+			this.phase = game;
+			this.deadline = System.currentTimeMillis() + TURN_TIMEOUT_MS;
+			this.mh.listen(game);
+			if (game.userColor == 1)
+				game.play();
+		}
+
+		/**
+		 * Move on from a game to the insult.
+		 * @param winner Whether the player won.
+		 * @param draw Whether the game is a draw.
+		 */
+		private void insult(boolean winner, boolean draw) {
+			if (draw) {
+				// Nobody to insult: the players would wait out the insult view.
+				finish();
+				return;
+			}
+
+			Insult insult = new Insult(winner);
+			this.phase = insult;
+			this.deadline = System.currentTimeMillis() + INSULT_TIMEOUT_MS;
+			this.mh.listen(insult);
+			if (winner)
+				insult.send();
+		}
+
+		/**
+		 * Close the connection and get back in the pool.
+		 */
+		private void finish() {
+			MessageHandler mh = this.mh;
+			if (mh != null)
+				// Not from this thread, which may well be the one the handler would wait for.
+				BackgroundExecutor.getInstance().execute(mh::close);
+			join();
+		}
+
+		/**
+		 * Give up on the current game or insult after an error.
+		 * @param kind Kind of error.
+		 */
+		private void fail(String kind) {
+			recordError(kind);
+			finish();
+		}
+
+		/**
+		 * Give up on the current game or insult if the opponent has not answered in time. The player may be stuck in
+		 * a handler call, so this is done in the background.
+		 * @param now Current time, in milliseconds.
+		 */
+		private void checkTimeout(long now) {
+			MiddleWare phase = this.phase;
+			if (phase != null && now > this.deadline)
+				BackgroundExecutor.getInstance().execute(() -> expire(phase));
+		}
+
+		/**
+		 * Give up on a game or insult that timed out, unless the player has moved on since.
+		 * @param phase Controller of the game or insult.
+		 */
+		private synchronized void expire(MiddleWare phase) {
+			if (this.phase == phase && System.currentTimeMillis() > this.deadline)
+				fail(phase instanceof Game ? "turn timeout" : "insult timeout");
+		}
+
+		/**
+		 * @return True if in the middle of a game or insult, false otherwise.
+		 */
+		private boolean isBusy() {
+			return this.phase != null;
+		}
+
+		/**
+		 * Stand-in for GameLogic: plays the moves as soon as it is the player's turn, and leaves for the insult as
+		 * soon as the game is over.
+		 */
+		private class Game implements MiddleWare {
+			private final Player me;
+			private final Player opponent;
+			private final int userColor, opponentColor;
+			private final GameBoard board;
+			private final Solver solver;
+			private boolean over;
+
+			/**
+			 * Constructor: sets up a new game.
+			 * @param me Player's information.
+			 * @param opponent Opponent's information.
+			 */
+			private Game(Player me, Player opponent) {
+				this.me = me;
+				this.opponent = opponent;
+				this.userColor = me.getCoin() + 1;
+				this.opponentColor = 3 - this.userColor;
+				this.board = new GameBoard();
+				this.solver = LoadGenerator.this.aiMoves ? new Solver(new TranspositionTable(AI_TABLE_BITS), 1) : null;
+			}
+
+			/**
+			 * Play a move, the way GameLogic.placeToken() does.
+			 */
+			private void play() {
+				int column;
+				if (this.solver != null) {
+					column = this.solver.getBestMove(this.board, AI_TIME_MS);
+				} else {
+					do {
+						column = ThreadLocalRandom.current().nextInt(7);
+					} while (!this.board.canPlay(column));
+				}
+
+				LoadGenerator.this.sentMoves.put(this.me.getFileName() + "#" + this.board.getMoveCount(), System.nanoTime());
+				SimulatedPlayer.this.mh.sendCheckedMessage(this, this.board.getCheckNumber(), column);
+				this.board.play(column, this.userColor);
+				if (this.board.getWinner() != GameBoard.NOBODY)
+					exit();
+			}
+
+			/**
+			 * The game is over: leave for the insult, the way GameLogic.exit() does.
+			 */
+			private void exit() {
+				if (this.over)
+					return;
+				this.over = true;
+
+				SimulatedPlayer.this.mh.sendMessage(this, MessageHandler.GAME_OVER);
+				int winner = this.board.getWinner();
+				if (this.userColor == 1 && winner != GameBoard.NOBODY)
+					LoadGenerator.this.matches.incrementAndGet(); // Counted once per game, by the first player
+				insult(winner == this.userColor, winner == GameBoard.DRAW);
+			}
+
+			@Override
+			public void transferData(int data) {
+				synchronized (SimulatedPlayer.this) {
+					if (SimulatedPlayer.this.phase != this)
+						return;
+
+					if (data == MessageHandler.GAME_OVER) {
+						exit();
+					} else if (data == MessageHandler.DISCONNECT_SIGNAL) {
+						fail("disconnect");
+					} else if (data == MessageHandler.TIME_OUT_SYNC) {
+						fail("opponent timeout");
+					} else if (data >= 0 && data < 7) {
+						receive(data);
+					}
+				}
+			}
+
+			/**
+			 * Handle the opponent's move, then answer it.
+			 * @param column Column the opponent played.
+			 */
+			private void receive(int column) {
+				Long sent = LoadGenerator.this.sentMoves.remove(this.opponent.getFileName() + "#" + this.board.getMoveCount());
+				if (sent != null)
+					recordLatency(System.nanoTime() - sent);
+
+				if (this.board.getTypeToMove() != this.opponentColor || !this.board.canPlay(column)) {
+					fail("invalid move");
+					return;
+				}
+
+				this.board.play(column, this.opponentColor);
+				SimulatedPlayer.this.deadline = System.currentTimeMillis() + TURN_TIMEOUT_MS;
+				if (this.board.getWinner() != GameBoard.NOBODY)
+					exit();
+				else
+					play();
+			}
+
+			@Override
+			public void transferCheck(long check) {
+				synchronized (SimulatedPlayer.this) {
+					if (SimulatedPlayer.this.phase == this && check != this.board.getCheckNumber())
+						fail("check");
+				}
+			}
+
+			@Override
+			public void transferFail() {
+				synchronized (SimulatedPlayer.this) {
+					if (SimulatedPlayer.this.phase == this)
+						fail("transfer");
+				}
+			}
+		}
+
+		/**
+		 * Stand-in for InsultLogic: the winner sends an insult right away and leaves once it is acknowledged; the
+		 * loser acknowledges it and leaves right away.
+		 */
+		private class Insult implements MiddleWare {
+			private final boolean winner;
+			private final StringBuilder insult;
+
+			/**
+			 * Constructor: sets up fields.
+			 * @param winner Whether the player won.
+			 */
+			private Insult(boolean winner) {
+				this.winner = winner;
+				this.insult = new StringBuilder();
+			}
+
+			/**
+			 * Send an insult, or nothing, the way InsultLogic.sendInsult() does.
+			 */
+			private void send() {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				if (random.nextInt(100) < NULL_INSULT_PERCENT)
+					SimulatedPlayer.this.mh.sendMessage(this, MessageHandler.NULL_SIGNAL);
+				else
+					SimulatedPlayer.this.mh.sendText(this, INSULTS[random.nextInt(INSULTS.length)]);
+			}
+
+			@Override
+			public void transferData(int data) {
+				synchronized (SimulatedPlayer.this) {
+					if (SimulatedPlayer.this.phase != this)
+						return;
+
+					if (data == MessageHandler.GAME_OVER)
+						return;
+
+					if (data == MessageHandler.DISCONNECT_SIGNAL) {
+						fail("disconnect");
+					} else if (this.winner) {
+						if (data == MessageHandler.ACK) {
+							LoadGenerator.this.insults.incrementAndGet();
+							finish();
+						}
+					} else if (data == MessageHandler.NULL_SIGNAL || data == MessageHandler.END_OF_STRING) {
+						SimulatedPlayer.this.mh.sendMessage(this, MessageHandler.ACK);
+						finish();
+					} else {
+						this.insult.append((char) data);
+					}
+				}
+			}
+
+			@Override
+			public void transferFail() {
+				synchronized (SimulatedPlayer.this) {
+					if (SimulatedPlayer.this.phase == this)
+						fail("transfer");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Run the load generator.
+	 * @param args Optional number of players (defaults to 100), duration in seconds (defaults to 60), pool mode (file,
+	 * the default, or matchmaker) and moves (random, the default, or ai).
+	 */
+	public static void main(String[] args) throws IOException {
+		int playerCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PLAYERS;
+		int duration = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_DURATION_S;
+		boolean matchmaker = args.length > 2 && MATCHMAKER_MODE.equals(args[2]);
+		boolean aiMoves = args.length > 3 && AI_MOVES.equals(args[3]);
+
+		HttpFileStorage.configureConnectionCache();
+		LocalFileServer.configureNoDelay();
+
+		// Every player needs a few background tasks at once (pool, listener, transmitter).
+		if (System.getProperty(BackgroundExecutor.MAX_TASKS_PROPERTY) == null)
+			System.setProperty(BackgroundExecutor.MAX_TASKS_PROPERTY, Integer.toString(4 * playerCount + 64));
+
+		LocalFileServer fileServer = null;
+		if (System.getProperty(ServerTextFileIO.SERVER_URL_PROPERTY) == null) {
+			fileServer = new LocalFileServer(Files.createTempDirectory("connectfour-load"), 0);
+			fileServer.start();
+			ServerTextFileIO.setStorage(new HttpFileStorage(fileServer.getBaseUrl()));
+		}
+		if (!matchmaker && !ServerTextFileIO.getInstance().exists(PlayerPool.PLAYER_POOL_FILE_NAME))
+			ServerTextFileIO.getInstance().createFile(PlayerPool.PLAYER_POOL_FILE_NAME);
+
+		MatchmakingServer matchmakingServer = null;
+		if (matchmaker) {
+			matchmakingServer = new MatchmakingServer(InetAddress.getLoopbackAddress(), 0);
+			matchmakingServer.start();
+			System.setProperty(PlayerPool.MATCHMAKER_PROPERTY, "127.0.0.1:" + matchmakingServer.getPort());
+		}
+
+		System.out.println(playerCount + " players for " + duration + " s, " + (matchmaker ? "matchmaking server" : "pool file") + ", "
+				+ (aiMoves ? "AI" : "random") + " moves, " + (System.getProperty(NetworkConfiguration.GAME_SERVER_PROPERTY) != null
+						? "game server" : System.getProperty(NetworkConfiguration.RELAY_PROPERTY) != null ? "relay" : "server files"));
+
+		try {
+			new LoadGenerator(playerCount, aiMoves).run(duration * 1000L);
+		} finally {
+			if (matchmakingServer != null)
+				matchmakingServer.stop();
+			if (fileServer != null)
+				fileServer.stop();
+		}
+		System.exit(0);
+	}
+}
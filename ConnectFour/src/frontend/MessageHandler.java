@@ -1,5 +1,10 @@
 package frontend;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import backend.Frame;
+
 /**
  * Wrapper to handle messages in the front-end; abstracts the networking away.
  */
@@ -14,6 +19,14 @@ public interface MessageHandler {
 	static final int END_OF_STRING = 18;
 	static final int TIME_OUT_SYNC = 8;
 
+	/**
+	 * Squeeze a check value into a single-byte message, above all other signals, the way it used to be sent.
+	 * @param check Check value of the board.
+	 * @return Message, between CHECK_NUMBER_LOW and 255.
+	 */
+	public static int hashCheckNumber(long check) {
+		return CHECK_NUMBER_LOW + (int) Math.floorMod(check, (long) (256 - CHECK_NUMBER_LOW));
+	}
 	
 	/**
 	 * If no transmitting connection is established, establish it.
@@ -23,6 +36,63 @@ public interface MessageHandler {
 	 */
 	public void sendMessage(MiddleWare mw, int message);
 	
+	/**
+	 * Transmit several messages in order. Handlers that can do so transmit them together, in one go.
+	 * @param mw Source front-end component.
+	 * @param messages Messages to transmit, in order.
+	 */
+	public default void sendMessages(MiddleWare mw, int[] messages) {
+		for (int message : messages)
+			sendMessage(mw, message);
+	}
+	
+	/**
+	 * Transmit a whole string. The opponent receives it in one piece (MiddleWare.transferText()).
+	 * @param mw Source front-end component.
+	 * @param text String to transmit.
+	 */
+	public default void sendText(MiddleWare mw, String text) {
+		sendFrames(mw, new Frame[] {Frame.ofText(text)});
+	}
+	
+	/**
+	 * Transmit a message along with the check value of the board it applies to; both are transmitted together.
+	 * The opponent receives the check value first (MiddleWare.transferCheck()), then the message.
+	 * @param mw Source front-end component.
+	 * @param check Check value of the board.
+	 * @param message Message to transmit.
+	 */
+	public default void sendCheckedMessage(MiddleWare mw, long check, int message) {
+		sendFrames(mw, new Frame[] {Frame.ofCheck(check), Frame.ofInt(message)});
+	}
+	
+	/**
+	 * Transmit frames in order, together. Handlers speaking the framed protocol (see FrameCodec) override this;
+	 * by default, frames are squeezed into single-byte messages the way they used to be sent.
+	 * @param mw Source front-end component.
+	 * @param frames Frames to transmit, in order.
+	 */
+	public default void sendFrames(MiddleWare mw, Frame[] frames) {
+		List<Integer> messages = new ArrayList<Integer>();
+		for (Frame frame : frames) {
+			if (frame.isInt()) {
+				messages.add(frame.getInt());
+			} else if (frame.isText()) {
+				String text = frame.getText();
+				for (int i = 0; i < text.length(); i++)
+					messages.add((int) text.charAt(i));
+				messages.add(END_OF_STRING);
+			} else if (frame.isCheck()) {
+				messages.add(hashCheckNumber(frame.getCheck()));
+			}
+		}
+		
+		int[] array = new int[messages.size()];
+		for (int i = 0; i < array.length; i++)
+			array[i] = messages.get(i);
+		sendMessages(mw, array);
+	}
+	
 	/**
 	 * If no listening connection is established, establish it.
 	 * Listen to messages, linking a front-end component to react to them.
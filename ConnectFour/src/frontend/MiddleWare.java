@@ -11,6 +11,26 @@ public interface MiddleWare {
 	 */
 	public void transferData(int data);
 	
+	/**
+	 * Inform the front-end that a whole string has been received. By default, it is passed on the way it used to
+	 * arrive: character by character, followed by MessageHandler.END_OF_STRING.
+	 * @param text String received.
+	 */
+	public default void transferText(String text) {
+		for (int i = 0; i < text.length(); i++)
+			transferData(text.charAt(i));
+		transferData(MessageHandler.END_OF_STRING);
+	}
+	
+	/**
+	 * Inform the front-end that a check value of the board has been received. By default, it is passed on the way
+	 * it used to arrive: squeezed into a byte above MessageHandler.CHECK_NUMBER_LOW.
+	 * @param check Check value received.
+	 */
+	public default void transferCheck(long check) {
+		transferData(MessageHandler.hashCheckNumber(check));
+	}
+	
 	/**
 	 * Inform the front-end that the message it tried to transmit failed to be delivered.
 	 */
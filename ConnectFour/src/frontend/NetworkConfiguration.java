@@ -1,28 +1,140 @@
 package frontend;
 
+import java.util.concurrent.atomic.AtomicLong;
+
+import backend.GameServer;
 import backend.Player;
+import backend.RelayServer;
 
 /**
  * Class that configures the network, i.e. the means to transmit and listen to messages.
  */
 public class NetworkConfiguration {
 	protected static final int PORT_NUMBER = 9877;
+	protected static final String TRANSPORT_PROPERTY = "connectfour.transport"; // nio (default) or socket
+	protected static final String SOCKET_TRANSPORT = "socket";
+	protected static final String GAME_SERVER_PROPERTY = "connectfour.gameserver"; // host:port of a GameServer
+	protected static final String AI_PROPERTY = "connectfour.ai"; // Set to true to play against the computer
+	protected static final String RELAY_PROPERTY = "connectfour.relay"; // host:port of a RelayServer, or local
+	protected static final String LOCAL_RELAY = "local"; // Relay started in this process
+	protected static final int RELAY_PROBE_TIMEOUT = 500; // 1/2 seconds
+	protected static final long RELAY_PROBE_INTERVAL = 60000; // 1 minute
 
 	private static MessageHandler mh;
+	private static final AtomicLong games = new AtomicLong();
+	private static final AtomicLong directGames = new AtomicLong();
+	private static final AtomicLong relayGames = new AtomicLong();
+	private static volatile String probedRelay; // Relay last probed, and the outcome
+	private static volatile boolean relayReachable;
+	private static volatile long relayProbeTime;
 	
 	/**
-	 * Configure and initialize the connection; if the players are in the same subnet, set up the socket connection;
-	 * otherwise, fall back to the failsafe server mechanism. 
+	 * Configure and initialize the connection; if the connectfour.gameserver system property is set, both players
+	 * play through that game server; otherwise, if the players are in the same subnet, set up the socket connection;
+	 * otherwise, if the connectfour.relay system property names a relay, both players connect to it; otherwise, fall
+	 * back to the failsafe server mechanism. The socket connection is event-driven (NIO) unless the
+	 * connectfour.transport system property is set to socket.
+	 *
+	 * Both players make the choice on their own, from their addresses, which they both see the same way. Whether the
+	 * relay can be used is not up to them, though: one of them may reach it while the other does not, or not yet.
+	 * The relay settles it for both, by pairing them or hanging up on the one waiting, and players it does not pair
+	 * fall back to the server files (see RelayMessageHandler). A player who cannot reach the relay goes straight to
+	 * the server files, which is where their opponent ends up as well.
 	 * @param me Object representing player.
 	 * @param opponent Object representing opponent.
 	 */
 	public static void configNetworking(Player me, Player opponent) {
+		mh = newMessageHandler(me, opponent);
+	}
+	
+	/**
+	 * Set up the message handler for a game between two players, as configNetworking() does, without keeping it.
+	 * @param me Object representing player.
+	 * @param opponent Object representing opponent.
+	 * @return Message handler.
+	 */
+	protected static MessageHandler newMessageHandler(Player me, Player opponent) {
 		int coin = me.getCoin();
+		String gameServer = System.getProperty(GAME_SERVER_PROPERTY);
+		games.incrementAndGet();
+		
+		if (gameServer != null)
+			return new GameServerMessageHandler(gameServer, coin, GameServer.getSessionKey(me, opponent));
+		else if (me.inSameSubnet(opponent)) {
+			directGames.incrementAndGet();
+			if (SOCKET_TRANSPORT.equals(System.getProperty(TRANSPORT_PROPERTY)))
+				return new SocketMessageHandler(opponent.getHostname(), PORT_NUMBER + coin, PORT_NUMBER + 1 - coin);
+			else
+				return new NioMessageHandler(opponent.getHostname(), PORT_NUMBER + coin, PORT_NUMBER + 1 - coin);
+		}
+		
+		String relay = getRelayAddress();
+		if (relay != null) {
+			relayGames.incrementAndGet();
+			return new RelayMessageHandler(relay, coin, GameServer.getSessionKey(me, opponent), opponent.getFileName(), me.getFileName());
+		}
+		
+		return new ServerMessageHandler(opponent.getFileName(), me.getFileName());
+	}
+	
+	/**
+	 * Address of the relay named by the connectfour.relay system property, if it answers. Whether it does is probed
+	 * at most once per RELAY_PROBE_INTERVAL, so that games do not each wait for an unreachable relay to time out.
+	 * The outcome only spares the player the wait: the opponent may well see the relay otherwise, and gets turned
+	 * down by it (see configNetworking()).
+	 * @return Address as host:port, or null if there is no relay to try.
+	 */
+	private static String getRelayAddress() {
+		String relay = System.getProperty(RELAY_PROPERTY);
+		if (relay == null)
+			return null;
+		if (LOCAL_RELAY.equals(relay))
+			return RelayServer.getLocalInstance().getAddress();
+		
+		long now = System.currentTimeMillis();
+		if (!relay.equals(probedRelay) || now - relayProbeTime >= RELAY_PROBE_INTERVAL) {
+			relayReachable = RelayServer.isReachable(relay, RELAY_PROBE_TIMEOUT);
+			relayProbeTime = now;
+			probedRelay = relay;
+		}
 		
-		if (me.inSameSubnet(opponent))
-			mh = new SocketMessageHandler(opponent.getHostname(), PORT_NUMBER + coin, PORT_NUMBER + 1 - coin);
-		else
-			mh = new ServerMessageHandler(opponent.getFileName(), me.getFileName());
+		return relayReachable ? relay : null;
+	}
+	
+	/**
+	 * Fraction of the games set up so far (in this process) that got the direct socket connection, as opposed to
+	 * the game server or the server files.
+	 * @return Fraction between 0 and 1 (0 if no game was set up yet).
+	 */
+	public static double getDirectFraction() {
+		long count = games.get();
+		return count == 0 ? 0 : (double) directGames.get() / count;
+	}
+	
+	/**
+	 * Fraction of the games set up so far (in this process) that were to go through a relay, including those the
+	 * relay did not pair (which fall back to the server files).
+	 * @return Fraction between 0 and 1 (0 if no game was set up yet).
+	 */
+	public static double getRelayFraction() {
+		long count = games.get();
+		return count == 0 ? 0 : (double) relayGames.get() / count;
+	}
+	
+	/**
+	 * Configure a game against the computer: no connection at all, the message handler plays the opponent.
+	 * @param coin Player's coin.
+	 */
+	public static void configAi(int coin) {
+		mh = new AiMessageHandler(coin);
+	}
+	
+	/**
+	 * Whether games are played against the computer instead of other players (connectfour.ai system property).
+	 * @return True if so, false otherwise.
+	 */
+	public static boolean isAiOpponent() {
+		return Boolean.getBoolean(AI_PROPERTY);
 	}
 	
 	/**
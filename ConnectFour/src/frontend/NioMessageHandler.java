@@ -0,0 +1,75 @@
+package frontend;
+
+import backend.Frame;
+import backend.NioMessageListener;
+import backend.NioMessageTransmitter;
+
+/**
+ * Message handler for the socket scenario, event-driven: messages are written and delivered as soon as the
+ * sockets are ready instead of being polled for. Speaks the same protocol as SocketMessageHandler, and all the
+ * games of the process share a single selector thread.
+ */
+public class NioMessageHandler implements MessageHandler {
+	
+	private NioMessageTransmitter mt;
+	private NioMessageListener ml;
+	
+	private String ip;
+	private int port1;
+	private int port2;
+	
+	/**
+	 * Constructor: sets up fields.
+	 * @param hostname IP address of the opponent as a string.
+	 * @param port1 Transmitting port number.
+	 * @param port2 Listening port number.
+	 */
+	public NioMessageHandler(String hostname, int port1, int port2) {
+		this.ip = hostname;
+		this.port1 = port1;
+		this.port2 = port2;
+	}
+
+	@Override
+	public void sendMessage(MiddleWare mw, int message) {
+		sendMessages(mw, new int[] {message});
+	}
+	
+	@Override
+	public void sendMessages(MiddleWare mw, int[] messages) {
+		sendFrames(mw, Frame.ofInts(messages));
+	}
+	
+	@Override
+	public void sendFrames(MiddleWare mw, Frame[] frames) {
+		if (mt == null) {
+			mt = new NioMessageTransmitter(ip, port1, mw);
+		} else {
+			mt.setMiddleWare(mw);
+		}
+		
+		mt.send(frames);
+	}
+
+	@Override
+	public void listen(MiddleWare mw) {
+		if (ml == null) {
+			ml = new NioMessageListener(port2, mw);
+		} else {
+			ml.setMiddleWare(mw);
+		}			
+	}
+
+	@Override
+	public void close() {
+		if (ml != null) {
+			ml.close();
+			ml = null;
+		}
+		
+		if (mt != null) {
+			mt.close();
+			mt = null;
+		}
+	}
+}
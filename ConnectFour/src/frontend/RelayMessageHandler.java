@@ -0,0 +1,126 @@
+package frontend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import backend.BackgroundExecutor;
+import backend.Frame;
+import backend.GameServerConnection;
+
+/**
+ * Message handler for the relay scenario: the players cannot connect to each other, so both connect to a
+ * RelayServer, which forwards their messages as they come. The relay speaks the game server's protocol without
+ * hosting the game, so the connection is the same as for the game server.
+ *
+ * The relay tells both players whether their opponent joined as well (see RelayServer). If not, because the opponent
+ * could not reach it or did not show up in time, both players fall back to the server files: the messages sent so
+ * far are sent again that way, as the relay dropped them.
+ */
+public class RelayMessageHandler extends GameServerMessageHandler implements GameServerConnection.PairingListener {
+
+	private String writingFileName;
+	private String readingFileName;
+
+	private List<Frame> sent = new ArrayList<Frame>(); // Frames sent until the opponent joins the relay, null after
+	private MiddleWare sender;
+	private MiddleWare listener;
+	private boolean isUnpaired;
+	private boolean isClosed;
+	private MessageHandler fallback;
+
+	/**
+	 * Constructor: sets up fields.
+	 * @param address Address of the relay as host:port.
+	 * @param coin Player's coin.
+	 * @param key Key of the game, the same for both players (see GameServer.getSessionKey()).
+	 * @param writingFileName Name of the file to which the player will write, should the relay not pair the players.
+	 * @param readingFileName Name of the file from which the player will read, should the relay not pair the players.
+	 */
+	public RelayMessageHandler(String address, int coin, String key, String writingFileName, String readingFileName) {
+		super(address, coin, key);
+		this.writingFileName = writingFileName;
+		this.readingFileName = readingFileName;
+	}
+
+	@Override
+	public synchronized void sendFrames(MiddleWare mw, Frame[] frames) {
+		if (fallback != null) {
+			fallback.sendFrames(mw, frames);
+			return;
+		}
+
+		if (sent != null) {
+			sent.addAll(Arrays.asList(frames));
+			sender = mw;
+		}
+		if (!isUnpaired)
+			super.sendFrames(mw, frames);
+	}
+
+	@Override
+	public synchronized void listen(MiddleWare mw) {
+		if (fallback != null) {
+			fallback.listen(mw);
+			return;
+		}
+
+		listener = mw;
+		if (!isUnpaired)
+			super.listen(mw);
+	}
+
+	@Override
+	protected GameServerConnection newConnection(String address, int coin, String key, MiddleWare mw) {
+		return new GameServerConnection(address, coin, key, mw, this);
+	}
+
+	@Override
+	public synchronized void paired() {
+		sent = null;
+	}
+
+	@Override
+	public synchronized void unpaired() {
+		if (isClosed || isUnpaired)
+			return;
+
+		isUnpaired = true;
+		// Setting up the server files takes a while: not on the relay connection's thread.
+		try {
+			BackgroundExecutor.getInstance().queue(this::fallBack);
+		} catch (RejectedExecutionException e) {
+			MiddleWare mw = listener != null ? listener : sender;
+			if (mw != null)
+				mw.transferFail();
+		}
+	}
+
+	/**
+	 * Switch over to the server files: listen first (which creates the file the opponent waits for before writing),
+	 * then send again everything sent to the relay.
+	 */
+	private synchronized void fallBack() {
+		if (isClosed)
+			return;
+
+		super.close();
+		fallback = new ServerMessageHandler(writingFileName, readingFileName);
+		if (listener != null)
+			fallback.listen(listener);
+		if (!sent.isEmpty())
+			fallback.sendFrames(sender, sent.toArray(new Frame[sent.size()]));
+		sent = null;
+	}
+
+	@Override
+	public synchronized void close() {
+		isClosed = true;
+		super.close();
+		if (fallback != null) {
+			fallback.close();
+			fallback = null;
+		}
+	}
+}
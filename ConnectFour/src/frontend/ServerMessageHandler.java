@@ -1,5 +1,6 @@
 package frontend;
 
+import backend.Frame;
 import backend.ServerMessageListener;
 import backend.ServerMessageTransmitter;
 
@@ -26,6 +27,16 @@ public class ServerMessageHandler implements MessageHandler {
 	
 	@Override
 	public void sendMessage(MiddleWare mw, int message) {
+		sendMessages(mw, new int[] {message});
+	}
+	
+	@Override
+	public void sendMessages(MiddleWare mw, int[] messages) {
+		sendFrames(mw, Frame.ofInts(messages));
+	}
+	
+	@Override
+	public void sendFrames(MiddleWare mw, Frame[] frames) {
 		if (mt == null) {
 			mt = new ServerMessageTransmitter(writingFileName, mw);
 			mt.start();
@@ -33,7 +44,7 @@ public class ServerMessageHandler implements MessageHandler {
 			mt.setMiddleWare(mw);
 		}
 		
-		mt.send(message);
+		mt.send(frames);
 	}
 
 	@Override
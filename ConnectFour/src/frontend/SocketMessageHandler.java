@@ -28,6 +28,16 @@ public class SocketMessageHandler implements MessageHandler {
 
 	@Override
 	public void sendMessage(MiddleWare mw, int message) {
+		sendMessages(mw, new int[] {message});
+	}
+	
+	@Override
+	public void sendMessages(MiddleWare mw, int[] messages) {
+		sendFrames(mw, Frame.ofInts(messages));
+	}
+	
+	@Override
+	public void sendFrames(MiddleWare mw, Frame[] frames) {
 		if (mt == null) {
 			mt = new SocketMessageTransmitter(ip, port1, mw);
 			mt.start();
@@ -35,7 +45,7 @@ public class SocketMessageHandler implements MessageHandler {
 			mt.setMiddleWare(mw);
 		}
 		
-		mt.send(message);
+		mt.send(frames);
 	}
 
 	@Override
@@ -1,5 +1,8 @@
 package frontend;
 
+import java.util.concurrent.ThreadLocalRandom;
+
+import backend.BackgroundExecutor;
 import backend.Player;
 import backend.PlayerPool;
 
@@ -12,14 +15,19 @@ public class WaitLogic implements ViewController, PoolObserver {
 	private WindowFrame f;
 	
 	/**
-	 * Constructor: places player in queue using the tools provided by PlayerPool.
+	 * Constructor: places player in queue using the tools provided by PlayerPool, or starts a game against the
+	 * computer right away if so configured.
 	 * @param f Pointer to the frame containing the view.
 	 */
 	public WaitLogic(WindowFrame f) {
 		this.f = f;
 		this.wc = new WaitCanvas(this);
 		
-		PlayerPool.getInstance().addSelf(this);
+		if (NetworkConfiguration.isAiOpponent())
+			// Like a match from the pool, the game starts once this view is up.
+			BackgroundExecutor.getInstance().execute(this::startAiGame);
+		else
+			PlayerPool.getInstance().addSelf(this);
 	}
 	
 	/**
@@ -30,6 +38,15 @@ public class WaitLogic implements ViewController, PoolObserver {
 		this.f.startGame(me, opponent);
 	}
 	
+	/**
+	 * Launch a game against the computer; who starts is drawn at random.
+	 */
+	public void startAiGame() {
+		int coin = ThreadLocalRandom.current().nextInt(2);
+		NetworkConfiguration.configAi(coin);
+		this.f.startGame(coin);
+	}
+	
 	@Override
 	public Canvas getCanvas() {
 		return this.wc;
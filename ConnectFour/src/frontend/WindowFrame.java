@@ -43,7 +43,14 @@ public class WindowFrame extends JFrame {
 	 * @param opponent Opponent's information.
 	 */
 	public void startGame(Player me, Player opponent) {
-		int coin = me.getCoin();
+		startGame(me.getCoin());
+	}
+	
+	/**
+	 * Launch a game.
+	 * @param coin Player's coin: 0 to play first (with color 1), 1 to play second (with color 2).
+	 */
+	public void startGame(int coin) {
 		switchView(new GameLogic(this, coin == 0, coin + 1));
 	}
 	